@@ -0,0 +1,167 @@
+/*
+ * BatchSubmitBenchmark
+ * 
+ * 0.3
+ * 
+ * 2026/10/18
+ * 
+ * (The MIT License)
+ * 
+ * Copyright (c) R2B Apps <r2b.apps@gmail.com>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * 'Software'), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED 'AS IS', WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+
+
+package r2b.apps.lib.taskmanager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of TaskManager batch submission against one execute 
+ * call per task, for a lot of tiny tasks on both engines. 
+ * The score is tasks per second.
+ * 
+ * Run from the BaseProject/benchmark directory:
+ * 
+ * mvn -B package
+ * java -jar target/benchmarks.jar BatchSubmitBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchSubmitBenchmark {
+
+	/**
+	 * Tasks per invocation.
+	 */
+	private static final int TASKS = 10000;
+	/**
+	 * Submitted priorities.
+	 */
+	private static final PRIORITY[] MIX = { PRIORITY.HIGH, PRIORITY.DEFAULT, PRIORITY.DEFAULT, PRIORITY.LOW };
+	
+	/**
+	 * The engine.
+	 */
+	@Param({ "PRIORITY_QUEUE", "WORK_STEALING" })
+	public TaskManager.ENGINE engine;
+	
+	/**
+	 * The task manager.
+	 */
+	private TaskManager manager;
+	/**
+	 * The tasks of the next invocation.
+	 */
+	private List<PriorityFutureTask<?>> futures;
+	/**
+	 * Counted down by each task of the next invocation.
+	 */
+	private CountDownLatch latch;
+	
+	/**
+	 * Builds the task manager, without traces.
+	 */
+	@Setup(Level.Trial)
+	public void start() {
+		manager = new TaskManager.Builder().setEngine(engine).setTraceSampling(0).build();
+	}
+	
+	/**
+	 * Shuts down the task manager.
+	 */
+	@TearDown(Level.Trial)
+	public void stop() {
+		manager.shutdown(false);
+	}
+	
+	/**
+	 * Builds the tasks of the next invocation, out of the measure.
+	 */
+	@Setup(Level.Invocation)
+	public void prepare() {
+		
+		latch = new CountDownLatch(TASKS);
+		final CountDownLatch done = latch;
+		final Runnable work = new Runnable() {
+			@Override
+			public void run() {
+				done.countDown();
+			}
+		};
+		
+		futures = new ArrayList<PriorityFutureTask<?>>(TASKS);
+		for (int i = 0; i < TASKS; i++) {
+			final PriorityFutureTask<Void> future = new PriorityFutureTask<Void>(work, null);
+			future.setPriority(MIX[i % MIX.length].getValue());
+			futures.add(future);
+		}
+	}
+	
+	/**
+	 * One execute call per task.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(TASKS)
+	public void execute() throws InterruptedException {
+		
+		for (PriorityFutureTask<?> future : futures) {
+			manager.enqueue(future);
+		}
+		
+		latch.await();
+	}
+	
+	/**
+	 * One batch submission.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(TASKS)
+	public void executeAll() throws InterruptedException {
+		
+		manager.enqueueAll(futures);
+		
+		latch.await();
+	}
+	
+}
@@ -0,0 +1,198 @@
+/*
+ * PriorityAgingBenchmark
+ * 
+ * 0.3
+ * 
+ * 2026/10/18
+ * 
+ * (The MIT License)
+ * 
+ * Copyright (c) R2B Apps <r2b.apps@gmail.com>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * 'Software'), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED 'AS IS', WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+
+package r2b.apps.lib.taskmanager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * JVM only benchmark of the queue wait time per priority class under saturation, 
+ * with and without priority aging.
+ * 
+ * The producer submits more work than the pool can run during a time window, 
+ * so the queue grows. Without aging the VERY_LOW tasks only run when the 
+ * producer stops; with aging all the classes keep a bounded wait time.
+ * 
+ * Run from the BaseProject/benchmark directory:
+ * 
+ * mvn -B package
+ * java -cp target/benchmarks.jar r2b.apps.lib.taskmanager.PriorityAgingBenchmark
+ */
+public final class PriorityAgingBenchmark {
+
+	/**
+	 * Pool threads.
+	 */
+	private static final int THREADS = 2;
+	/**
+	 * Time each task runs.
+	 */
+	private static final long TASK_TIME = TimeUnit.MICROSECONDS.toNanos(500);
+	/**
+	 * Tasks submitted per task time, more than THREADS saturates the pool.
+	 */
+	private static final int TASKS_PER_TICK = THREADS + 1;
+	/**
+	 * Producer window.
+	 */
+	private static final long PRODUCER_TIME = TimeUnit.SECONDS.toNanos(2);
+	/**
+	 * Aging time for one priority level.
+	 */
+	private static final long AGING_TIME = 50; // Milliseconds
+	/**
+	 * Submitted priorities, mostly HIGH.
+	 */
+	private static final PRIORITY[] MIX = {
+		PRIORITY.HIGH, PRIORITY.HIGH, PRIORITY.HIGH, PRIORITY.HIGH, PRIORITY.CRITICAL, 
+		PRIORITY.DEFAULT, PRIORITY.LOW, PRIORITY.HIGH, PRIORITY.VERY_LOW, PRIORITY.HIGH
+	};
+	
+	public static void main(String[] args) throws Exception {
+		run("No aging", new PriorityFutureTaskComparator());
+		run("Aging " + AGING_TIME + " ms per level", 
+				new PriorityFutureTaskComparator(AGING_TIME, TimeUnit.MILLISECONDS));
+	}
+	
+	/**
+	 * Runs one round and prints the wait time percentiles per priority.
+	 * @param name The round name.
+	 * @param comparator The queue comparator.
+	 */
+	private static void run(String name, PriorityFutureTaskComparator comparator) throws InterruptedException {
+		
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+				THREADS, THREADS, 1, TimeUnit.SECONDS, 
+				new PriorityBlockingQueue<Runnable>(11, comparator));
+		executor.prestartAllCoreThreads();
+		
+		final PRIORITY[] priorities = PRIORITY.values();
+		final List<List<Long>> waits = new ArrayList<List<Long>>(priorities.length);
+		for (int i = 0; i < priorities.length; i++) {
+			waits.add(Collections.synchronizedList(new ArrayList<Long>()));
+		}
+		
+		final long end = System.nanoTime() + PRODUCER_TIME;
+		int n = 0;
+		while (System.nanoTime() < end) {
+			for (int i = 0; i < TASKS_PER_TICK; i++) {
+				final PRIORITY priority = MIX[n++ % MIX.length];
+				final Probe probe = new Probe(waits.get(priority.ordinal()));
+				final PriorityFutureTask<Void> future = new PriorityFutureTask<Void>(probe, null);
+				probe.future = future;
+				future.setPriority(priority.getValue());
+				future.enqueued();
+				executor.execute(future);
+			}
+			LockSupport.parkNanos(TASK_TIME);
+		}
+		
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+		
+		System.out.println(name + ", " + n + " tasks");
+		System.out.println(String.format("%-10s %8s %10s %10s %10s", "PRIORITY", "count", "p50 ms", "p99 ms", "max ms"));
+		for (PRIORITY priority : priorities) {
+			final List<Long> samples = new ArrayList<Long>(waits.get(priority.ordinal()));
+			if (samples.isEmpty()) {
+				continue;
+			}
+			Collections.sort(samples);
+			System.out.println(String.format("%-10s %8d %10.1f %10.1f %10.1f", 
+					priority.name(), 
+					samples.size(), 
+					millis(percentile(samples, 0.50)), 
+					millis(percentile(samples, 0.99)), 
+					millis(samples.get(samples.size() - 1).longValue())));
+		}
+		System.out.println();
+	}
+	
+	/**
+	 * A task that records its queue wait time and runs a fixed time.
+	 */
+	private static final class Probe implements Runnable {
+		
+		/**
+		 * The wait time samples of the task priority.
+		 */
+		private final List<Long> samples;
+		/**
+		 * The future that wraps this probe.
+		 */
+		private PriorityFutureTask<Void> future;
+		
+		/**
+		 * Builder.
+		 * @param samples The wait time samples of the task priority.
+		 */
+		Probe(List<Long> samples) {
+			this.samples = samples;
+		}
+		
+		@Override
+		public void run() {
+			samples.add(Long.valueOf(System.nanoTime() - future.getEnqueueTime()));
+			final long until = System.nanoTime() + TASK_TIME;
+			while (System.nanoTime() < until) {
+				// Busy work
+			}
+		}
+		
+	}
+	
+	/**
+	 * Gets a percentile of sorted samples.
+	 * @param sorted The samples.
+	 * @param p The percentile, from 0 to 1.
+	 * @return The sample.
+	 */
+	private static long percentile(List<Long> sorted, double p) {
+		return sorted.get((int) Math.min(sorted.size() - 1, Math.round(p * (sorted.size() - 1)))).longValue();
+	}
+	
+	/**
+	 * Nanoseconds to milliseconds.
+	 * @param nanos The nanoseconds.
+	 * @return The milliseconds.
+	 */
+	private static double millis(long nanos) {
+		return nanos / 1000000.0;
+	}
+	
+}
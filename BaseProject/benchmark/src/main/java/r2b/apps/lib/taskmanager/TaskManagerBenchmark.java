@@ -0,0 +1,515 @@
+/*
+ * TaskManagerBenchmark
+ * 
+ * 0.3
+ * 
+ * 2026/10/18
+ * 
+ * (The MIT License)
+ * 
+ * Copyright (c) R2B Apps <r2b.apps@gmail.com>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * 'Software'), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED 'AS IS', WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+
+
+package r2b.apps.lib.taskmanager;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of the task system, to measure scheduling changes 
+ * before a release:
+ * 
+ * - comparator: PriorityFutureTaskComparator queue offer and poll 
+ * throughput, with and without aging.
+ * - workload: TaskManager throughput for short CPU tasks, blocking tasks 
+ * and a mix of both, all of them with mixed priorities.
+ * - observers: BaseSyncTask throughput with an observer notified on the 
+ * completing thread or on an executor.
+ * - latency: the time from submit to end of one task per priority class 
+ * while a feeder keeps the manager saturated with the mixed workload, 
+ * sampled, so JMH reports its percentiles per priority.
+ * 
+ * The throughput scores are operations, tasks or queue operations, per second. 
+ * The allocation rate and bytes per operation are reported by the gc profiler.
+ * 
+ * Run from the BaseProject/benchmark directory:
+ * 
+ * mvn -B package
+ * java -jar target/benchmarks.jar TaskManagerBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskManagerBenchmark {
+
+	/**
+	 * Queue operations per comparator invocation, offers and polls.
+	 */
+	private static final int QUEUE_SIZE = 10000;
+	/**
+	 * Tasks per workload invocation.
+	 */
+	private static final int WORKLOAD_TASKS = 1000;
+	/**
+	 * Tasks per observer path invocation.
+	 */
+	private static final int OBSERVED_TASKS = 10000;
+	/**
+	 * Time a CPU task runs.
+	 */
+	private static final long CPU_TIME = TimeUnit.MICROSECONDS.toNanos(20);
+	/**
+	 * Time a blocking task sleeps, in milliseconds.
+	 */
+	private static final long BLOCKING_TIME = 1;
+	/**
+	 * One of each this number of mixed tasks is blocking.
+	 */
+	private static final int BLOCKING_RATIO = 5;
+	/**
+	 * Queued tasks the feeder keeps on the saturated manager.
+	 */
+	private static final int SATURATION_DEPTH = 64;
+	/**
+	 * Aging time for one priority level of the saturated manager, in milliseconds.
+	 */
+	private static final long SATURATION_AGING = 50;
+	/**
+	 * Submitted priorities.
+	 */
+	private static final PRIORITY[] MIX = {
+		PRIORITY.HIGH, PRIORITY.DEFAULT, PRIORITY.DEFAULT, PRIORITY.LOW, 
+		PRIORITY.CRITICAL, PRIORITY.DEFAULT, PRIORITY.VERY_LOW, PRIORITY.HIGH
+	};
+	
+	/**
+	 * The workloads.
+	 */
+	public static enum WORKLOAD {
+		CPU, BLOCKING, MIXED
+	};
+	
+	/**
+	 * Where the observers are notified.
+	 */
+	public static enum DELIVERY {
+		COMPLETING_THREAD, EXECUTOR
+	};
+	
+	/**
+	 * Fills and empties a priority queue with the task comparator.
+	 * @param state The queue state.
+	 * @return The polled count.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(2 * QUEUE_SIZE)
+	public int comparator(QueueState state) {
+		
+		final PriorityBlockingQueue<Runnable> queue = 
+				new PriorityBlockingQueue<Runnable>(11, state.comparator);
+		
+		for (PriorityFutureTask<?> future : state.futures) {
+			future.enqueued();
+			queue.offer(future);
+		}
+		
+		int polled = 0;
+		while (queue.poll() != null) {
+			polled++;
+		}
+		
+		return polled;
+	}
+	
+	/**
+	 * Submits and waits one round of a workload.
+	 * @param state The workload state.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(WORKLOAD_TASKS)
+	public void workload(WorkloadState state) throws InterruptedException {
+		
+		final CountDownLatch latch = new CountDownLatch(WORKLOAD_TASKS);
+		
+		for (int i = 0; i < WORKLOAD_TASKS; i++) {
+			final boolean blocking = state.workload == WORKLOAD.BLOCKING 
+					|| (state.workload == WORKLOAD.MIXED && i % BLOCKING_RATIO == 0);
+			state.manager.execute(new Work(MIX[i % MIX.length], blocking, latch));
+		}
+		
+		latch.await();
+	}
+	
+	/**
+	 * Submits and waits one round of observed tasks.
+	 * @param state The observer state.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(OBSERVED_TASKS)
+	public void observers(ObserverState state) throws InterruptedException {
+		
+		final CountDownLatch latch = new CountDownLatch(OBSERVED_TASKS);
+		final BaseSyncTaskObserver<Integer> observer = new BaseSyncTaskObserver<Integer>() {
+			@Override
+			public void completed(BaseSyncTask<Integer> task, Integer data) {
+				latch.countDown();
+			}
+		};
+		
+		for (int i = 0; i < OBSERVED_TASKS; i++) {
+			final Observed task = new Observed(MIX[i % MIX.length]);
+			task.addObserver(observer, state.executor);
+			state.manager.execute(task);
+		}
+		
+		latch.await();
+	}
+	
+	/**
+	 * Runs one task of a priority class on the saturated manager.
+	 * @param state The saturated manager state.
+	 * @return The task result.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SampleTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public Object latency(SaturatedState state) throws InterruptedException, ExecutionException {
+		
+		final Observed task = new Observed(state.priority);
+		state.manager.execute(task);
+		
+		return task.priorityFutureTask.get();
+	}
+	
+	/**
+	 * Builds a task manager without traces, the Android log is not available.
+	 * @return The task manager builder.
+	 */
+	private static TaskManager.Builder newTaskManager() {
+		return new TaskManager.Builder().setTraceSampling(0);
+	}
+	
+	/**
+	 * The queued futures of the comparator benchmark.
+	 */
+	@State(Scope.Benchmark)
+	public static class QueueState {
+		
+		/**
+		 * Aging time for one priority level in milliseconds, zero for no aging.
+		 */
+		@Param({ "0", "50" })
+		public long aging;
+		
+		/**
+		 * The queue comparator.
+		 */
+		PriorityFutureTaskComparator comparator;
+		/**
+		 * The futures to queue, with mixed priorities.
+		 */
+		PriorityFutureTask<?>[] futures;
+		
+		/**
+		 * Builds the comparator and the futures.
+		 */
+		@Setup(Level.Trial)
+		public void setUp() {
+			
+			comparator = aging > 0 ? 
+					new PriorityFutureTaskComparator(aging, TimeUnit.MILLISECONDS) : 
+					new PriorityFutureTaskComparator();
+			
+			futures = new PriorityFutureTask<?>[QUEUE_SIZE];
+			for (int i = 0; i < QUEUE_SIZE; i++) {
+				futures[i] = new PriorityFutureTask<Void>(NOTHING, null);
+				futures[i].setPriority(MIX[i % MIX.length].getValue());
+			}
+		}
+		
+	}
+	
+	/**
+	 * The task manager of a workload.
+	 */
+	@State(Scope.Benchmark)
+	public static class WorkloadState {
+		
+		/**
+		 * The workload.
+		 */
+		@Param({ "CPU", "BLOCKING", "MIXED" })
+		public WORKLOAD workload;
+		
+		/**
+		 * The task manager.
+		 */
+		TaskManager manager;
+		
+		/**
+		 * Builds the task manager.
+		 */
+		@Setup(Level.Trial)
+		public void setUp() {
+			manager = newTaskManager().build();
+		}
+		
+		/**
+		 * Shuts down the task manager.
+		 */
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			manager.shutdown(false);
+		}
+		
+	}
+	
+	/**
+	 * The task manager and observer executor of the observer path.
+	 */
+	@State(Scope.Benchmark)
+	public static class ObserverState {
+		
+		/**
+		 * Where the observers are notified.
+		 */
+		@Param({ "COMPLETING_THREAD", "EXECUTOR" })
+		public DELIVERY delivery;
+		
+		/**
+		 * The task manager.
+		 */
+		TaskManager manager;
+		/**
+		 * The observer executor, null for the completing thread.
+		 */
+		Executor executor;
+		
+		/**
+		 * Builds the task manager and the executor.
+		 */
+		@Setup(Level.Trial)
+		public void setUp() {
+			
+			manager = newTaskManager().build();
+			
+			if (delivery == DELIVERY.EXECUTOR) {
+				executor = new Executor() {
+					@Override
+					public void execute(Runnable command) {
+						command.run();
+					}
+				};
+			}
+		}
+		
+		/**
+		 * Shuts down the task manager.
+		 */
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			manager.shutdown(false);
+		}
+		
+	}
+	
+	/**
+	 * A task manager kept saturated with the mixed workload by a feeder thread, 
+	 * with priority aging so the low priority classes are not starved.
+	 */
+	@State(Scope.Benchmark)
+	public static class SaturatedState {
+		
+		/**
+		 * The priority of the measured tasks.
+		 */
+		@Param({ "CRITICAL", "HIGH", "DEFAULT", "LOW", "VERY_LOW" })
+		public PRIORITY priority;
+		
+		/**
+		 * The task manager.
+		 */
+		TaskManager manager;
+		/**
+		 * The feeder thread.
+		 */
+		private Thread feeder;
+		/**
+		 * True while the feeder runs.
+		 */
+		private volatile boolean feeding;
+		
+		/**
+		 * Builds the task manager and starts the feeder.
+		 */
+		@Setup(Level.Trial)
+		public void setUp() {
+			
+			manager = newTaskManager()
+					.setPriorityAging(SATURATION_AGING, TimeUnit.MILLISECONDS)
+					.build();
+			
+			feeding = true;
+			feeder = new Thread("TaskManagerBenchmark-feeder") {
+				@Override
+				public void run() {
+					int n = 0;
+					while (feeding) {
+						if (manager.getQueueSize() < SATURATION_DEPTH) {
+							final boolean blocking = n % BLOCKING_RATIO == 0;
+							manager.execute(new Work(MIX[n++ % MIX.length], blocking, null));
+						}
+						else {
+							LockSupport.parkNanos(CPU_TIME);
+						}
+					}
+				}
+			};
+			feeder.setDaemon(true);
+			feeder.start();
+		}
+		
+		/**
+		 * Stops the feeder and shuts down the task manager.
+		 */
+		@TearDown(Level.Trial)
+		public void tearDown() throws InterruptedException {
+			feeding = false;
+			feeder.join();
+			manager.shutdown(false);
+		}
+		
+	}
+	
+	/**
+	 * Does nothing.
+	 */
+	private static final Runnable NOTHING = new Runnable() {
+		@Override
+		public void run() {
+			// Nothing
+		}
+	};
+	
+	/**
+	 * A task of the workloads.
+	 */
+	private static final class Work extends BaseAsyncTask {
+		
+		/**
+		 * True to sleep, false to use the CPU.
+		 */
+		private final boolean blocking;
+		/**
+		 * Counted down on end, null if none.
+		 */
+		private final CountDownLatch latch;
+		
+		/**
+		 * Builder.
+		 * @param priority The priority.
+		 * @param blocking True to sleep, false to use the CPU.
+		 * @param latch Counted down on end, null if none.
+		 */
+		Work(PRIORITY priority, boolean blocking, CountDownLatch latch) {
+			super(0, priority);
+			this.blocking = blocking;
+			this.latch = latch;
+		}
+
+		/* (non-Javadoc)
+		 * @see r2b.apps.lib.taskmanager.Task#doInBackground()
+		 */
+		@Override
+		protected Void doInBackground() throws Exception {
+			try {
+				if (blocking) {
+					Thread.sleep(BLOCKING_TIME);
+				}
+				else {
+					final long until = System.nanoTime() + CPU_TIME;
+					while (System.nanoTime() < until) {
+						// Busy work
+					}
+				}
+			} finally {
+				if (latch != null) {
+					latch.countDown();
+				}
+			}
+			return null;
+		}
+		
+	}
+	
+	/**
+	 * An observed task of the observer path, and the measured task of the latency.
+	 */
+	private static final class Observed extends BaseSyncTask<Integer> {
+		
+		/**
+		 * The result.
+		 */
+		private static final Integer RESULT = Integer.valueOf(1);
+		
+		/**
+		 * Builder.
+		 * @param priority The priority.
+		 */
+		Observed(PRIORITY priority) {
+			super(0, priority);
+		}
+
+		/* (non-Javadoc)
+		 * @see r2b.apps.lib.taskmanager.Task#doInBackground()
+		 */
+		@Override
+		protected Integer doInBackground() throws Exception {
+			return RESULT;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,295 @@
+/*
+ * BulkInserter
+ * 
+ * 0.3
+ * 
+ * 2026/10/18
+ * 
+ * (The MIT License)
+ * 
+ * Copyright (c) R2B Apps <r2b.apps@gmail.com>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * 'Software'), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED 'AS IS', WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+
+package r2b.apps.db;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.content.ContentValues;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * Inserts entities with compiled statements: one INSERT per table and columns 
+ * is compiled once and cached, each row only binds its values by position. 
+ * SQLite does not parse the query again for each row, and nothing is logged 
+ * per row.
+ * 
+ * Not thread safe, the caller must synchronize it.
+ */
+final class BulkInserter {
+
+	/**
+	 * Database instance.
+	 */
+	private final SQLiteDatabase db;
+	/**
+	 * Incremental key flags by table.
+	 */
+	private final Map<String, Boolean> incrementalFlagCache;
+	/**
+	 * Compiled statements by query.
+	 */
+	private final Map<String, Insert> statements = new HashMap<String, Insert>();
+	
+	/**
+	 * Builder.
+	 * @param db The database instance.
+	 * @param incrementalFlagCache The incremental keys.
+	 */
+	BulkInserter(SQLiteDatabase db, Map<String, Boolean> incrementalFlagCache) {
+		this.db = db;
+		this.incrementalFlagCache = incrementalFlagCache;
+	}
+	
+	/**
+	 * Inserts the items, on transactions of up to chunkSize rows.
+	 * The items get their key.
+	 * @param list The items to insert.
+	 * @param chunkSize The max number of rows per transaction.
+	 * @return The number of inserted items.
+	 * @throws SQLException If a row can not be inserted, 
+	 * the rows of the previous transactions are kept.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	<K> int insert(List<DBEntity<K>> list, int chunkSize) throws SQLException {
+		
+		final int size = list.size();
+		int inserted = 0;
+		
+		while (inserted < size) {
+			
+			final int end = Math.min(size, inserted + chunkSize);
+			
+			db.beginTransaction();
+			try {
+				
+				Insert insert = null;
+				for (int i = inserted; i < end; i++) {
+					
+					final DBEntity<K> item = list.get(i);
+					final ContentValues values = item.getTableContentValues();
+					
+					if (Boolean.TRUE.equals(incrementalFlagCache.get(item.getTableName()))) {
+						// The key is generated, as in GenericDaoImpl.create
+						values.remove(DBEntity.COL_ID);
+					}
+					
+					// Consecutive items normally share table and columns
+					if (insert == null || !insert.matches(item.getTableName(), values)) {
+						insert = statementOf(item.getTableName(), values);
+					}
+					
+					final long id = insert.execute(values);
+					if (id == -1) {
+						throw new SQLException("Can not insert element: " + item.toString());
+					}
+					((DBEntity) item).setKey((int) id);
+				}
+				
+				db.setTransactionSuccessful();
+				
+			} finally {
+				db.endTransaction();
+			}
+			
+			inserted = end;
+		}
+		
+		return inserted;
+	}
+	
+	/**
+	 * Closes the compiled statements.
+	 */
+	void close() {
+		
+		for (Insert insert : statements.values()) {
+			insert.statement.close();
+		}
+		
+		statements.clear();
+	}
+	
+	/**
+	 * Get the compiled insert of a table and columns, compiling it the first time.
+	 * @param table The table.
+	 * @param values The row values.
+	 * @return The insert.
+	 */
+	private Insert statementOf(String table, ContentValues values) {
+		
+		final String[] columns = columnsOf(values);
+		
+		final StringBuilder sql = new StringBuilder(64)
+			.append("INSERT INTO ")
+			.append(table)
+			.append(" (");
+		for (int i = 0; i < columns.length; i++) {
+			sql.append(i == 0 ? "" : ", ").append(columns[i]);
+		}
+		sql.append(") VALUES (");
+		for (int i = 0; i < columns.length; i++) {
+			sql.append(i == 0 ? "?" : ", ?");
+		}
+		sql.append(")");
+		
+		final String query = sql.toString();
+		
+		Insert insert = statements.get(query);
+		if (insert == null) {
+			insert = new Insert(table, columns, db.compileStatement(query));
+			statements.put(query, insert);
+		}
+		
+		return insert;
+	}
+	
+	/**
+	 * Get the columns of a row values, on iteration order.
+	 * @param values The row values.
+	 * @return The columns.
+	 */
+	static String[] columnsOf(ContentValues values) {
+		
+		final String[] columns = new String[values.size()];
+		
+		int i = 0;
+		for (Map.Entry<String, Object> entry : values.valueSet()) {
+			columns[i++] = entry.getKey();
+		}
+		
+		return columns;
+	}
+	
+	/**
+	 * Binds a value with its type.
+	 * @param statement The statement.
+	 * @param index The 1-based position.
+	 * @param value The value.
+	 */
+	static void bind(SQLiteStatement statement, int index, Object value) {
+		
+		if (value == null) {
+			statement.bindNull(index);
+		}
+		else if (value instanceof Long || value instanceof Integer 
+				|| value instanceof Short || value instanceof Byte) {
+			statement.bindLong(index, ((Number) value).longValue());
+		}
+		else if (value instanceof Double || value instanceof Float) {
+			statement.bindDouble(index, ((Number) value).doubleValue());
+		}
+		else if (value instanceof Boolean) {
+			statement.bindLong(index, ((Boolean) value).booleanValue() ? 1 : 0);
+		}
+		else if (value instanceof byte[]) {
+			statement.bindBlob(index, (byte[]) value);
+		}
+		else {
+			statement.bindString(index, value.toString());
+		}
+	}
+	
+	/**
+	 * A compiled insert of a table and columns.
+	 */
+	private static final class Insert {
+		
+		/**
+		 * The table.
+		 */
+		final String table;
+		/**
+		 * The columns, on binding order.
+		 */
+		final String[] columns;
+		/**
+		 * The compiled statement.
+		 */
+		final SQLiteStatement statement;
+		
+		/**
+		 * Builder.
+		 * @param table The table.
+		 * @param columns The columns, on binding order.
+		 * @param statement The compiled statement.
+		 */
+		Insert(String table, String[] columns, SQLiteStatement statement) {
+			this.table = table;
+			this.columns = columns;
+			this.statement = statement;
+		}
+		
+		/**
+		 * Check if a row has the table and columns of this insert.
+		 * @param table The row table.
+		 * @param values The row values.
+		 * @return True if it can be inserted with this insert.
+		 */
+		boolean matches(String table, ContentValues values) {
+			
+			if (!this.table.equals(table) || values.size() != columns.length) {
+				return false;
+			}
+			
+			for (String column : columns) {
+				if (!values.containsKey(column)) {
+					return false;
+				}
+			}
+			
+			return true;
+		}
+		
+		/**
+		 * Binds the row values by position and inserts it.
+		 * @param values The row values.
+		 * @return The row id, -1 on error.
+		 */
+		long execute(ContentValues values) {
+			
+			statement.clearBindings();
+			
+			for (int i = 0; i < columns.length; i++) {
+				bind(statement, i + 1, values.get(columns[i]));
+			}
+			
+			return statement.executeInsert();
+		}
+		
+	}
+	
+}
@@ -32,7 +32,9 @@
 
 package r2b.apps.db;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
 
 import r2b.apps.utils.logger.Logger;
 import android.content.Context;
@@ -66,6 +68,10 @@ public class DBManager<K> {
 	 * Database.
 	 */
 	private final SQLiteDatabase db;
+	/**
+	 * Compiled statements bulk insert, guarded by itself.
+	 */
+	private final BulkInserter inserter;
 	
 	/**
 	 * Builder.
@@ -77,6 +83,8 @@ public class DBManager<K> {
 		db = DatabaseHandler.getDatabase();
 		
 		dao = new GenericDaoImpl<DBEntity<K>, K>(db, handler.getIncrementalKeys());
+		
+		inserter = new BulkInserter(db, handler.getIncrementalKeys());
 	}
 	
 	/**
@@ -100,6 +108,19 @@ public class DBManager<K> {
 	public DBEntity<K> retrieve(final K id, final Class<? extends DBEntity<K>> clazz) {
 		return (DBEntity<K>) dao.retrieve(id, (Class<DBEntity<K>>) clazz);
 	}
+	
+    /**
+     * Get the items with the ids, one query serves up to 500 ids.
+     * @param ids Ids of the items to get.
+     * @param clazz The class of the entity to retrieve.
+     * @return List of the stored items, in no particular order, or an empty list. Never null.
+     * @throws IllegalArgumentException, ids is null or contains a null id.
+     */
+	@SuppressWarnings("unchecked")
+	public List<DBEntity<K>> retrieveAll(final Collection<K> ids, final Class<? extends DBEntity<K>> clazz) 
+			throws IllegalArgumentException {
+		return dao.retrieveAll(ids, (Class<DBEntity<K>>) clazz);
+	}
 
     /**
      * Change the values of the item, except id, to new values.
@@ -143,9 +164,58 @@ public class DBManager<K> {
 		return dao.listAll((Class<DBEntity<K>>) clazz, row, order == null ? null : order.toString(), limit);
 	}
 	
+    /**
+     * List all elements with an order by clause and limit, zero if no limits.
+     * @param clazz The class of the entity to retrieve.
+     * @param orderBy The order by clause without the ORDER BY keywords, e.g. "priority ASC, id ASC". 
+     * Null if no order.
+	 * @param limit The max number of items. Zero for no limits.
+	 * @return List of items, or an empty list. Never null.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<DBEntity<K>> listAll(final Class<? extends DBEntity<K>> clazz, String orderBy, int limit) {
+		return dao.listAll((Class<DBEntity<K>>) clazz, null, orderBy, limit);
+	}
+	
+    /**
+     * List one page of elements with keyset pagination: the next page seeks after 
+     * the last row of the previous one, so each page costs the same at any position.
+     * The rows are ordered by the column and by id to break ties.
+     * @param clazz The class of the entity to retrieve.
+     * @param row The column to order by, it should be indexed and not null. Null to order by id. 
+     * Only INTEGER or TEXT columns, the token keeps the value as text and a REAL one loses precision.
+	 * @param order The order, ASC or DESC. Null for ASC.
+	 * @param size The max number of items of the page, positive.
+	 * @param token The Page.getNextToken() of the previous page, null for the first one.
+	 * @return The page, never null.
+	 * @throws IllegalArgumentException, when size is not positive or the token is not valid.
+	 */
+	@SuppressWarnings("unchecked")
+	public Page<DBEntity<K>> listPage(final Class<? extends DBEntity<K>> clazz, String row, ORDER_BY order, int size, String token) 
+			throws IllegalArgumentException {
+		return dao.listPage((Class<DBEntity<K>>) clazz, row, order == null ? null : order.toString(), size, token);
+	}
+	
+    /**
+     * Iterate all elements without loading them on a list, only one cursor 
+     * window of rows is on memory. Useful for exports and scans of big tables. 
+     * Close the iterator on a finally block.
+     * @param clazz The class of the entity to retrieve.
+     * @param orderBy The order by clause without the ORDER BY keywords. Null if no order.
+     * @param reuse True to fill one entity instance for all rows, next returns 
+     * the same object each time. It needs a mapper registered on EntityMappers, 
+     * without it each row is a new object.
+	 * @return The iterator, never null.
+	 */
+	@SuppressWarnings("unchecked")
+	public EntityCursor<DBEntity<K>> iterate(final Class<? extends DBEntity<K>> clazz, String orderBy, boolean reuse) {
+		return dao.iterate((Class<DBEntity<K>>) clazz, orderBy, reuse);
+	}
+	
 	/**
-	 * Bulk insert properly with transactions.
-	 * @param list The items to insert.
+	 * Bulk insert properly with one transaction.
+	 * Each table query is compiled once and the rows are bound by position.
+	 * @param list The items to insert, they get their key.
 	 * @throws IllegalArgumentException, when list is null.
 	 */
 	public void bulkInsert(List<DBEntity<K>> list) throws IllegalArgumentException {
@@ -154,27 +224,42 @@ public class DBManager<K> {
 			throw new IllegalArgumentException("list argument is null");
 		}
 		
+		bulkInsert(list, Math.max(1, list.size()));
+	}
+	
+	/**
+	 * Bulk insert properly with transactions of chunkSize rows, for a lot of rows.
+	 * Each table query is compiled once and the rows are bound by position.
+	 * If it fails the rows of the previous transactions are kept.
+	 * @param list The items to insert, they get their key.
+	 * @param chunkSize The max number of rows per transaction.
+	 * @throws IllegalArgumentException, when list is null or chunkSize is not positive.
+	 */
+	public void bulkInsert(List<DBEntity<K>> list, int chunkSize) throws IllegalArgumentException {
+		
+		if(list == null) {
+			throw new IllegalArgumentException("list argument is null");
+		}
+		
+		if(chunkSize < 1) {
+			throw new IllegalArgumentException("chunkSize argument is not positive");
+		}
+		
 		long performanceBegin = System.currentTimeMillis();
 		
 		try {
 			
-			db.beginTransaction();
-			
-			for(DBEntity<K> item : list) {
-				dao.create(item);	
-			}			
-			
-			db.setTransactionSuccessful();									
+			synchronized (inserter) {
+				inserter.insert(list, chunkSize);
+			}
 
 		} catch (SQLException e) {
 			Logger.e(DBManager.class.getSimpleName(), "Can't bulk insert", e);
 			throw new RuntimeException(e);
-		} finally {						
-			db.endTransaction();			
 		}
 		
 	    Logger.performance(DBManager.class.getSimpleName(), 
-	    		"void bulkInsert(List<DBEntity<K>> list)", 
+	    		"void bulkInsert(List<DBEntity<K>> list, int chunkSize)", 
 	    		System.currentTimeMillis()-performanceBegin);	
 	}
 	
@@ -248,10 +333,57 @@ public class DBManager<K> {
 	    		System.currentTimeMillis()-performanceBegin);	
 	}	
 	
+	/**
+	 * Create a table and its indexes if they do not exist, for the tables 
+	 * of a library that are not declared on res/raw/create_table.properties, 
+	 * so the application database version does not need to change.
+	 * @param table The table name.
+	 * @param columns The columns, as on create_table.properties.
+	 * @param indexes The indexed columns, as on create_index.properties.
+	 * @throws IllegalArgumentException, when table or columns are null.
+	 */
+	public void createTable(String table, String columns, String... indexes) throws IllegalArgumentException {
+		
+		if(table == null) {
+			throw new IllegalArgumentException("table argument is null");
+		}
+		
+		if(columns == null) {
+			throw new IllegalArgumentException("columns argument is null");
+		}
+		
+		db.beginTransaction();
+		try {
+			
+			/**
+			 * Is not possible executing multiple statements with SQLiteDatabase.execSQL
+			 */
+			db.execSQL("CREATE TABLE IF NOT EXISTS " + table + " ( " + columns + " );");
+			
+			for(String index : indexes) {
+				db.execSQL("CREATE INDEX IF NOT EXISTS " + table + "_" + index + "_index ON " + table + "( " + index + " );");
+			}
+			
+			db.setTransactionSuccessful();
+			
+		} finally {
+			db.endTransaction();
+		}
+		
+		// As the database handler on create
+		synchronized (handler) {
+			handler.getIncrementalKeys().put(table, columns.toUpperCase(Locale.US).contains("AUTOINCREMENT"));
+		}
+	}
+	
 	/**
 	 * Close the db.
 	 */
 	public void close() {
+		synchronized (inserter) {
+			inserter.close();
+		}
+		dao.close();
 		handler.close();
 		dao = null;
 	}
@@ -0,0 +1,168 @@
+/*
+ * EntityCursor
+ * 
+ * 0.3
+ * 
+ * 2026/10/18
+ * 
+ * (The MIT License)
+ * 
+ * Copyright (c) R2B Apps <r2b.apps@gmail.com>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * 'Software'), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED 'AS IS', WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+
+package r2b.apps.db;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import android.database.Cursor;
+
+/**
+ * Streaming iterator over the entities of a query, for big tables.
+ * 
+ * The rows are not loaded on a list: the cursor fills its window as it 
+ * moves, so only one window of rows is on memory at a time. With entity 
+ * reuse one instance is filled for every row, and next returns the same 
+ * object each time, copy the values to keep them. Reuse needs a mapper 
+ * registered on EntityMappers, the default one reads each row with 
+ * DBEntity.valueOf, a new object, so next returns a new one each time.
+ * 
+ * Always close it, on a finally block, the cursor is only closed 
+ * automatically when the last row has been read:
+ * 
+ * <pre>
+ * EntityCursor&lt;DBEntity&lt;Integer&gt;&gt; it = dbManager.iterate(MyEntity.class, null, true);
+ * try {
+ *     while (it.hasNext()) {
+ *         export(it.next());
+ *     }
+ * } finally {
+ *     it.close();
+ * }
+ * </pre>
+ * 
+ * Not thread safe.
+ * 
+ * @param <T> Entity
+ */
+public final class EntityCursor<T extends DBEntity<?>> implements Iterator<T>, Closeable {
+	
+	/**
+	 * The query cursor.
+	 */
+	private final Cursor c;
+	/**
+	 * The row mapper.
+	 */
+	private final EntityMapper<T> mapper;
+	/**
+	 * True to fill one entity for all rows.
+	 */
+	private final boolean reuse;
+	/**
+	 * The reused entity, null until the first row or without reuse.
+	 */
+	private T entity;
+	/**
+	 * True when the cursor is on a row not returned yet.
+	 */
+	private boolean ready;
+	
+	/**
+	 * Builder.
+	 * @param c The query cursor, with the mapper columns.
+	 * @param mapper The row mapper.
+	 * @param reuse True to fill one entity for all rows.
+	 */
+	EntityCursor(final Cursor c, final EntityMapper<T> mapper, final boolean reuse) {
+		this.c = c;
+		this.mapper = mapper;
+		this.reuse = reuse;
+	}
+	
+	/**
+	 * Get the number of rows of the query.
+	 * @return The number of rows.
+	 */
+	public int getCount() {
+		return c.getCount();
+	}
+	
+	@Override
+	public boolean hasNext() {
+		
+		if(!ready && !c.isClosed()) {
+			ready = c.moveToNext();
+			if(!ready) {
+				close();
+			}
+		}
+		
+		return ready;
+	}
+
+	@Override
+	public T next() {
+		
+		if(!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		
+		ready = false;
+		
+		if(!reuse) {
+			return mapper.read(c, mapper.newEntity());
+		}
+		
+		if(entity == null) {
+			entity = mapper.newEntity();
+		}
+		entity = mapper.read(c, entity);
+		
+		return entity;
+	}
+
+	/**
+	 * Not supported, use DBManager.delete.
+	 * @throws UnsupportedOperationException, always.
+	 */
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("remove");
+	}
+
+	/**
+	 * Closes the cursor, it can be called more than once.
+	 */
+	@Override
+	public void close() {
+		
+		ready = false;
+		
+		if(!c.isClosed()) {
+			c.close();
+		}
+	}
+	
+}
@@ -0,0 +1,75 @@
+/*
+ * EntityMapper
+ * 
+ * 0.3
+ * 
+ * 2026/10/18
+ * 
+ * (The MIT License)
+ * 
+ * Copyright (c) R2B Apps <r2b.apps@gmail.com>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * 'Software'), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED 'AS IS', WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+
+package r2b.apps.db;
+
+import android.database.Cursor;
+
+/**
+ * Maps the rows of a table to entities without reflection, 
+ * register it once with EntityMappers.register.
+ * 
+ * The queries select the mapper columns, so the column at position i of 
+ * the cursor is getColumns()[i] and read can use constant indexes 
+ * instead of looking them up by name for each row.
+ * 
+ * @param <T> Entity
+ */
+public interface EntityMapper<T extends DBEntity<?>> {
+
+	/**
+	 * Get the table name.
+	 * @return The table name.
+	 */
+	public String getTableName();
+	
+	/**
+	 * Get the columns to select, on cursor order.
+	 * @return The columns, null to select all of them.
+	 */
+	public String[] getColumns();
+	
+	/**
+	 * Creates an empty entity.
+	 * @return The entity.
+	 */
+	public T newEntity();
+	
+	/**
+	 * Reads the cursor current row.
+	 * @param c The cursor, with the getColumns() columns on order.
+	 * @param entity The entity to fill, a new one or one reused between rows.
+	 * @return The entity with the row values, normally the argument one.
+	 */
+	public T read(final Cursor c, final T entity);
+	
+}
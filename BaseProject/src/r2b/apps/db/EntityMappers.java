@@ -0,0 +1,164 @@
+/*
+ * EntityMappers
+ * 
+ * 0.3
+ * 
+ * 2026/10/18
+ * 
+ * (The MIT License)
+ * 
+ * Copyright (c) R2B Apps <r2b.apps@gmail.com>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * 'Software'), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED 'AS IS', WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+
+package r2b.apps.db;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import android.database.Cursor;
+
+/**
+ * Registry of the entity mappers by entity class.
+ * 
+ * An entity class without a registered mapper gets a default one the first 
+ * time it is used. It only caches the table name: each row still builds an 
+ * entity by reflection, and DBEntity.valueOf usually builds a second one 
+ * to read the row into. Register a mapper to avoid both.
+ * 
+ * WARNING: DBEntity.valueOf returns a new entity, so the default mapper 
+ * can not fill a reused one. Register a mapper that fills the argument 
+ * entity to iterate with reuse in constant memory.
+ */
+public final class EntityMappers {
+	
+	/**
+	 * Mappers by entity class.
+	 */
+	private static final ConcurrentHashMap<Class<?>, EntityMapper<?>> MAPPERS = 
+			new ConcurrentHashMap<Class<?>, EntityMapper<?>>();
+	
+	/**
+	 * Builder, not instantiable.
+	 */
+	private EntityMappers() {
+		super();
+	}
+	
+	/**
+	 * Registers the mapper of an entity class, replacing the previous one.
+	 * @param clazz The entity class.
+	 * @param mapper The mapper.
+	 * @throws IllegalArgumentException, when an argument is null.
+	 */
+	public static <T extends DBEntity<?>> void register(final Class<T> clazz, final EntityMapper<T> mapper) 
+			throws IllegalArgumentException {
+		
+		if(clazz == null) {
+			throw new IllegalArgumentException("clazz argument is null");
+		}
+		
+		if(mapper == null) {
+			throw new IllegalArgumentException("mapper argument is null");
+		}
+		
+		MAPPERS.put(clazz, mapper);
+	}
+	
+	/**
+	 * Get the mapper of an entity class, the registered one or a default one.
+	 * @param clazz The entity class.
+	 * @return The mapper.
+	 * @throws IllegalStateException, when the default mapper can not instantiate the class.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T extends DBEntity<?>> EntityMapper<T> get(final Class<T> clazz) {
+		
+		EntityMapper<T> mapper = (EntityMapper<T>) MAPPERS.get(clazz);
+		
+		if(mapper == null) {
+			mapper = new ReflectiveMapper<T>(clazz);
+			final EntityMapper<T> previous = (EntityMapper<T>) MAPPERS.putIfAbsent(clazz, mapper);
+			if(previous != null) {
+				mapper = previous;
+			}
+		}
+		
+		return mapper;
+	}
+	
+	/**
+	 * The default mapper, with reflection and DBEntity.valueOf. 
+	 * It returns a new entity for each row, even when one is reused.
+	 * @param <T> Entity
+	 */
+	private static final class ReflectiveMapper<T extends DBEntity<?>> implements EntityMapper<T> {
+		
+		/**
+		 * The entity class.
+		 */
+		private final Class<T> clazz;
+		/**
+		 * The table name.
+		 */
+		private final String tableName;
+		
+		/**
+		 * Builder.
+		 * @param clazz The entity class.
+		 */
+		ReflectiveMapper(final Class<T> clazz) {
+			this.clazz = clazz;
+			this.tableName = newEntity().getTableName();
+		}
+
+		@Override
+		public String getTableName() {
+			return tableName;
+		}
+
+		@Override
+		public String[] getColumns() {
+			return null;
+		}
+
+		@Override
+		public T newEntity() {
+			try {
+				return clazz.newInstance();
+			} catch (IllegalAccessException | InstantiationException e) {
+				throw new IllegalStateException(e.toString());
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public T read(final Cursor c, final T entity) {
+			try {
+				return (T) entity.valueOf(c);
+			} catch (ClassCastException e) {
+				throw new IllegalStateException(e.toString());
+			}
+		}
+		
+	}
+	
+}
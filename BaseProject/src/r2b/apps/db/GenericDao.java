@@ -32,6 +32,7 @@
 
 package r2b.apps.db;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -40,7 +41,7 @@ import java.util.List;
  * @param <T> Object
  * @param <K> Key
  */
-public interface GenericDao<T, K> {
+public interface GenericDao<T extends DBEntity<?>, K> {
 
 	/**
 	 * Insert T item on db.
@@ -59,6 +60,15 @@ public interface GenericDao<T, K> {
      */
 	public T retrieve(final K id, final Class<T> clazz) throws IllegalArgumentException;
 
+    /**
+     * Get the items with the ids, with one IN query per chunk of ids.
+     * @param ids Ids of the items to get.
+     * @param clazz The class of the entity to retrieve.
+     * @return List of the stored items, in no particular order, or an empty list. Never null.
+     * @throws IllegalArgumentException, ids is null or contains a null id.
+     */
+	public List<T> retrieveAll(final Collection<K> ids, final Class<T> clazz) throws IllegalArgumentException;
+
     /**
      * Change the values of T, except id, to new values.
      * @param t Item to update with the new values.
@@ -91,5 +101,40 @@ public interface GenericDao<T, K> {
 	 * @return List of items, or an empty list. Never null.
 	 */
 	public List<T> listAll(final Class<T> clazz, String row, String order, int limit);
+
+    /**
+     * List one page of elements ordered by a column, with keyset pagination. 
+     * The rows are ordered by the column and by id to break ties, a page starts 
+     * after the last row of the previous one.
+     * @param clazz The class of the entity to retrieve.
+     * @param row The column name to order by, indexed, not null, INTEGER or TEXT. Null to order by id.
+	 * @param order The order, ASC or DESC. Null for ASC.
+	 * @param size The max number of items of the page, positive.
+	 * @param token The continuation token of the previous page, null for the first one.
+	 * @return The page, never null.
+	 * @throws IllegalArgumentException, clazz is null, size is not positive, row is not a column name 
+	 * or the token is not valid.
+	 * @throws IllegalStateException, the last row of the page has a null id or column value.
+	 */
+	public Page<T> listPage(final Class<T> clazz, String row, String order, int size, String token) 
+			throws IllegalArgumentException;
+
+	/**
+	 * Iterate all elements without loading them on a list, for big tables. 
+	 * Close the iterator when done.
+	 * @param clazz The class of the entity to retrieve.
+	 * @param orderBy The order by clause without the ORDER BY keywords. Null if no order.
+	 * @param reuse True to fill one entity instance for all rows, in constant memory. 
+	 * It needs a mapper registered on EntityMappers.
+	 * @return The iterator, never null.
+	 * @throws IllegalArgumentException, clazz is null.
+	 */
+	public EntityCursor<T> iterate(final Class<T> clazz, String orderBy, boolean reuse) 
+			throws IllegalArgumentException;
+	
+	/**
+	 * Releases the compiled statements.
+	 */
+	public void close();
 	
 }
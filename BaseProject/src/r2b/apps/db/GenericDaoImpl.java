@@ -33,8 +33,12 @@
 package r2b.apps.db;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import r2b.apps.utils.logger.Logger;
 import android.content.ContentValues;
@@ -52,6 +56,16 @@ import android.database.sqlite.SQLiteException;
 @SuppressWarnings("rawtypes")
 public class GenericDaoImpl<T extends DBEntity<?>, K> implements GenericDao<T, K> {
 	
+	/**
+	 * Max number of ids on each IN clause, under the SQLite limit of 999 variables.
+	 */
+	private static final int IN_CHUNK_SIZE = 500;
+	
+	/**
+	 * A plain column identifier, the listPage column is concatenated on the query.
+	 */
+	private static final Pattern COLUMN_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+	
 	/**
 	 * Incremental flag cache.
 	 */
@@ -61,6 +75,12 @@ public class GenericDaoImpl<T extends DBEntity<?>, K> implements GenericDao<T, K
 	 * Database instance.
 	 */
 	protected SQLiteDatabase db;
+	/**
+	 * Compiled update and delete by key, guarded by itself. 
+	 * Lock it on a database transaction, so the lock order is 
+	 * always the database and then the statements, as the bulk writes.
+	 */
+	private final KeyStatements statements;
 	
 	/**
 	 * Builder.
@@ -70,6 +90,7 @@ public class GenericDaoImpl<T extends DBEntity<?>, K> implements GenericDao<T, K
 	public GenericDaoImpl(SQLiteDatabase db, final Map<String, Boolean> incrementalFlagCache) {	
 		this.db = db;
 		this.incrementalFlagCache = incrementalFlagCache;
+		this.statements = new KeyStatements(db);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -113,7 +134,6 @@ public class GenericDaoImpl<T extends DBEntity<?>, K> implements GenericDao<T, K
 	    return t;
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public T retrieve(final K id, final Class<T> clazz) throws IllegalArgumentException {
 		
@@ -129,19 +149,16 @@ public class GenericDaoImpl<T extends DBEntity<?>, K> implements GenericDao<T, K
 		T element = null;
 		Cursor c = null;
 		try {
-			String tableName = null;
-			{
-				Object obj = clazz.newInstance();
-				tableName = ((DBEntity) obj).getTableName();
-			}
-						
+			final EntityMapper<T> mapper = EntityMappers.get(clazz);
 
-			final String selection = DBEntity.COL_ID + " LIKE ?"; 
+			// Exact match, bound as text: the INTEGER affinity of the key column 
+			// converts it, so it is a rowid seek, query can not bind it typed
+			final String selection = DBEntity.COL_ID + " = ?"; 
 			final String[] selectionArgs = { String.valueOf(id) };
 			
 			c = db.query(
-				tableName,
-			    null,
+				mapper.getTableName(),
+				mapper.getColumns(),
 			    selection,
 			    selectionArgs,
 			    null,
@@ -151,10 +168,7 @@ public class GenericDaoImpl<T extends DBEntity<?>, K> implements GenericDao<T, K
 			// There is one item at least
 			if (c.moveToFirst()) {
 				
-				{
-					Object obj = clazz.newInstance();
-					element = (T) ((DBEntity) obj).valueOf(c);
-				}
+				element = mapper.read(c, mapper.newEntity());
 
 				Logger.i(GenericDaoImpl.class.getSimpleName(), "Retrieve element with id: " + String.valueOf(id));
 				
@@ -162,11 +176,6 @@ public class GenericDaoImpl<T extends DBEntity<?>, K> implements GenericDao<T, K
 				Logger.i(GenericDaoImpl.class.getSimpleName(), "There is no element with id: " + String.valueOf(id));
 			}
 			
-		} catch (IllegalAccessException | 
-				IllegalArgumentException | 
-				ClassCastException | 
-				InstantiationException e) {
-			throw new IllegalStateException(e.toString());
 		} finally {
 			if(c != null && !c.isClosed()){
 		        c.close();
@@ -180,7 +189,76 @@ public class GenericDaoImpl<T extends DBEntity<?>, K> implements GenericDao<T, K
 		return element;
 	}
 	
-	@SuppressWarnings("unchecked")
+	@Override
+	public List<T> retrieveAll(final Collection<K> ids, final Class<T> clazz) throws IllegalArgumentException {
+		
+		if(ids == null) {
+			throw new IllegalArgumentException("Ids argument is null");
+		}
+		else if(clazz == null) {
+			throw new IllegalArgumentException("Clazz argument is null or empty");
+		}
+		
+		long performanceBegin = System.currentTimeMillis();
+		
+		List<T> elements = new ArrayList<T>(ids.size());
+		
+		final EntityMapper<T> mapper = EntityMappers.get(clazz);
+		final Iterator<K> it = ids.iterator();
+		int consumed = 0;
+		
+		// One query per chunk of ids
+		while (it.hasNext()) {
+			
+			final int chunk = Math.min(IN_CHUNK_SIZE, ids.size() - consumed);
+			final List<String> args = new ArrayList<String>(chunk);
+			final StringBuilder selection = new StringBuilder(DBEntity.COL_ID.length() + 6 + chunk * 3)
+				.append(DBEntity.COL_ID)
+				.append(" IN (");
+			while (it.hasNext() && args.size() < IN_CHUNK_SIZE) {
+				final K id = it.next();
+				if(id == null) {
+					throw new IllegalArgumentException("Ids argument contains a null id");
+				}
+				selection.append(args.isEmpty() ? "?" : ", ?");
+				// As text, converted by the INTEGER affinity of the key column
+				args.add(String.valueOf(id));
+			}
+			selection.append(")");
+			consumed += args.size();
+			
+			Cursor c = null;
+			try {
+				c = db.query(
+					mapper.getTableName(),
+					mapper.getColumns(),
+				    selection.toString(),
+				    args.toArray(new String[args.size()]),
+				    null,
+				    null,
+				    null);
+				
+				while (c.moveToNext()) {
+					elements.add(mapper.read(c, mapper.newEntity()));
+				}
+				
+			} finally {
+				if(c != null && !c.isClosed()){
+			        c.close();
+			    }  
+			}
+		}
+		
+		Logger.i(GenericDaoImpl.class.getSimpleName(), 
+				"Retrieve elements: " + String.valueOf(elements.size()) + " of " + String.valueOf(ids.size()));
+		
+	    Logger.performance(GenericDaoImpl.class.getSimpleName(), 
+	    		"List<T> retrieveAll(final Collection<K> ids, final Class<T> clazz)", 
+	    		System.currentTimeMillis()-performanceBegin);	
+		
+		return elements;
+	}
+	
 	@Override
 	public T update(T t) throws IllegalArgumentException {
 		
@@ -208,16 +286,25 @@ public class GenericDaoImpl<T extends DBEntity<?>, K> implements GenericDao<T, K
 				Logger.i(DatabaseHandler.class.getSimpleName(), "Removed col ID");
 			}		
 		}	
-
-		// Which row to update, based on the ID
-		final String selection = DBEntity.COL_ID + " LIKE ?";
-		final String[] selectionArgs = { t.getKey().toString() };
 		
+		if(values == null || values.size() == 0) {
+			throw new IllegalArgumentException("T content values are empty");
+		}
+
+		// Which row to update, based on the ID, bound with its type
 		// Return: the number of rows affected. Should be 1
-		int exit = (int) db.update(t.getTableName(), values, selection, selectionArgs);
+		int exit;
+		db.beginTransaction();
+		try {
+			synchronized (statements) {
+				exit = statements.update(t.getTableName(), values, t.getKey());
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
 	    
 	    if(exit == 1) {
-	    	((DBEntity)updated).setKey(exit);    		    	
 	    	Logger.i(GenericDaoImpl.class.getSimpleName(), "Element updated: \n" + t.toString());
 	    } else {	    	
 	    	Logger.e(GenericDaoImpl.class.getSimpleName(),
@@ -244,12 +331,18 @@ public class GenericDaoImpl<T extends DBEntity<?>, K> implements GenericDao<T, K
 		
 		long performanceBegin = System.currentTimeMillis();
 		
-		// Which row to delete, based on the ID
-		String selection = DBEntity.COL_ID + " LIKE ?";
-		String[] selectionArgs = { t.getKey().toString() };
-		
+		// Which row to delete, based on the ID, bound with its type
 		// Return: the number of rows affected. Should be 1
-		int exit = db.delete(t.getTableName(), selection, selectionArgs);
+		int exit;
+		db.beginTransaction();
+		try {
+			synchronized (statements) {
+				exit = statements.delete(t.getTableName(), t.getKey());
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
 		
 	    if(exit == 1) {	    	
 	    	Logger.i(GenericDaoImpl.class.getSimpleName(), "Element deleted: \n" + t.toString());
@@ -264,7 +357,6 @@ public class GenericDaoImpl<T extends DBEntity<?>, K> implements GenericDao<T, K
 	    
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public List<T> listAll(final Class<T> clazz) {
 		
@@ -281,16 +373,11 @@ public class GenericDaoImpl<T extends DBEntity<?>, K> implements GenericDao<T, K
 		Cursor c = null;
 		
 		try {
-			String tableName = null;
-			{
-				Object obj = clazz.newInstance();
-				tableName = ((DBEntity) obj).getTableName();
-			}
-						
+			final EntityMapper<T> mapper = EntityMappers.get(clazz);
 			
 			c = db.query(
-				tableName,
-			    null,
+				mapper.getTableName(),
+				mapper.getColumns(),
 			    null,
 			    null,
 			    null,
@@ -300,29 +387,16 @@ public class GenericDaoImpl<T extends DBEntity<?>, K> implements GenericDao<T, K
 			if (c.moveToFirst()) {
 
 				do {		
-					
-					T element;
-					{
-						Object obj = clazz.newInstance();
-						element = (T) ((DBEntity) obj).valueOf(c);
-					}
-					
-					elements.add(element);	
-					
-					Logger.i(GenericDaoImpl.class.getSimpleName(), 
-							"Retrieve element with id: " + String.valueOf(c.getInt(0)));	    		
-					
+					elements.add(mapper.read(c, mapper.newEntity()));
 				} while (c.moveToNext());
 				
+				Logger.i(GenericDaoImpl.class.getSimpleName(), 
+						"Retrieve elements: " + String.valueOf(elements.size()));
+				
 			} else {
 				Logger.i(GenericDaoImpl.class.getSimpleName(), "There are no elements.");
 			}
 						
-		} catch (IllegalAccessException | 
-				IllegalArgumentException | 
-				ClassCastException | 
-				InstantiationException e) {
-			throw new IllegalStateException(e.toString());
 		} finally {
 			if(c != null && !c.isClosed()){
 		        c.close();
@@ -336,7 +410,6 @@ public class GenericDaoImpl<T extends DBEntity<?>, K> implements GenericDao<T, K
 		return elements;
 	}
 	
-	@SuppressWarnings("unchecked")
 	@Override
 	public List<T> listAll(final Class<T> clazz, String row, String order, int limit) {		
 		
@@ -346,54 +419,40 @@ public class GenericDaoImpl<T extends DBEntity<?>, K> implements GenericDao<T, K
 		
 		long performanceBegin = System.currentTimeMillis();
 		
+		// The order clause, the row is optional
+		final String orderBy = row == null ? order : (order == null ? row : row + " " + order);
+		
 		Logger.i(DatabaseHandler.class.getSimpleName(), 
-				"listAll " + clazz.getSimpleName() + ", with order " + order + ", and limit " + String.valueOf(limit));
+				"listAll " + clazz.getSimpleName() + ", with order " + orderBy + ", and limit " + String.valueOf(limit));
 		
 		List<T> elements = new ArrayList<T>();
 		Cursor c = null;
 		try {
-			String tableName = null;
-			{
-				Object obj = clazz.newInstance();
-				tableName = ((DBEntity) obj).getTableName();
-			}						
+			final EntityMapper<T> mapper = EntityMappers.get(clazz);
 			
 			c = db.query(
-				tableName,
+				mapper.getTableName(),
+				mapper.getColumns(),
 			    null,
 			    null,
 			    null,
 			    null,
-			    null,
-			    order,
+			    orderBy,
 			    limit == 0 ? null : String.valueOf(limit));
 			
 			if (c.moveToFirst()) {
 
 				do {		
-					
-					T element;
-					{
-						Object obj = clazz.newInstance();
-						element = (T) ((DBEntity) obj).valueOf(c);
-					}
-					
-					elements.add(element);	
-					
-					Logger.i(GenericDaoImpl.class.getSimpleName(), 
-							"Retrieve element with id: " + String.valueOf(c.getInt(0)));	    		
-					
+					elements.add(mapper.read(c, mapper.newEntity()));
 				} while (c.moveToNext());
 				
+				Logger.i(GenericDaoImpl.class.getSimpleName(), 
+						"Retrieve elements: " + String.valueOf(elements.size()));
+				
 			} else {
 				Logger.i(GenericDaoImpl.class.getSimpleName(), "There are no elements.");
 			}			
 			
-		} catch (IllegalAccessException | 
-				IllegalArgumentException | 
-				ClassCastException | 
-				InstantiationException e) {
-			throw new IllegalStateException(e.toString());
 		} finally {
 			if(c != null && !c.isClosed()){
 		        c.close();
@@ -407,5 +466,185 @@ public class GenericDaoImpl<T extends DBEntity<?>, K> implements GenericDao<T, K
 		return elements;
 	}	
 	
+	@Override
+	public Page<T> listPage(final Class<T> clazz, String row, String order, int size, String token) 
+			throws IllegalArgumentException {
+		
+		if(clazz == null) {
+			throw new IllegalArgumentException("Clazz argument is null or empty");
+		}
+		else if(size <= 0) {
+			throw new IllegalArgumentException("Size argument is not positive");
+		}
+		else if(row != null && !COLUMN_NAME.matcher(row).matches()) {
+			throw new IllegalArgumentException("Row argument is not a column name: " + row);
+		}
+		
+		long performanceBegin = System.currentTimeMillis();
+		
+		final String column = row == null ? DBEntity.COL_ID : row;
+		final boolean byId = DBEntity.COL_ID.equals(column);
+		final boolean descending = "DESC".equalsIgnoreCase(order);
+		final String direction = descending ? " DESC" : " ASC";
+		final String operator = descending ? " < ?" : " > ?";
+		
+		// The id breaks the ties of the column values
+		final String orderBy = byId ? 
+				column + direction : 
+				column + direction + ", " + DBEntity.COL_ID + direction;
+		
+		// Seek after the last row of the previous page
+		String selection = null;
+		String[] selectionArgs = null;
+		if(token != null) {
+			final String[] last = decodeToken(token);
+			if(byId) {
+				selection = column + operator;
+				selectionArgs = new String[] { last[0] };
+			} else {
+				selection = column + operator + " OR (" + column + " = ? AND " + DBEntity.COL_ID + operator + ")";
+				selectionArgs = new String[] { last[1], last[1], last[0] };
+			}
+		}
+		
+		Logger.i(DatabaseHandler.class.getSimpleName(), 
+				"listPage " + clazz.getSimpleName() + ", with order " + orderBy + ", and size " + String.valueOf(size));
+		
+		List<T> elements = new ArrayList<T>(size);
+		String nextToken = null;
+		Cursor c = null;
+		try {
+			final EntityMapper<T> mapper = EntityMappers.get(clazz);
+			
+			// One more row to know if there is a next page
+			c = db.query(
+				mapper.getTableName(),
+				seekColumns(mapper.getColumns(), column),
+			    selection,
+			    selectionArgs,
+			    null,
+			    null,
+			    orderBy,
+			    String.valueOf(size + 1));
+			
+			while (elements.size() < size && c.moveToNext()) {
+				elements.add(mapper.read(c, mapper.newEntity()));
+			}
+			
+			if (c.moveToNext() && c.moveToPosition(size - 1)) {
+				// As text, exact for INTEGER and TEXT columns, see Page
+				final String lastId = c.getString(c.getColumnIndexOrThrow(DBEntity.COL_ID));
+				final String lastValue = byId ? null : c.getString(c.getColumnIndexOrThrow(column));
+				if(!byId && lastValue == null) {
+					throw new IllegalStateException("Can not paginate a row with null " + column);
+				}
+				nextToken = encodeToken(lastId, lastValue);
+			}
+			
+			Logger.i(GenericDaoImpl.class.getSimpleName(), 
+					"Retrieve elements: " + String.valueOf(elements.size()));
+			
+		} finally {
+			if(c != null && !c.isClosed()){
+		        c.close();
+		    }  
+		}
+		
+	    Logger.performance(GenericDaoImpl.class.getSimpleName(), 
+	    		"Page<T> listPage(final Class<T> clazz, String row, String order, int size, String token)", 
+	    		System.currentTimeMillis()-performanceBegin);
+	    
+		return new Page<T>(elements, nextToken);
+	}
+	
+	@Override
+	public EntityCursor<T> iterate(final Class<T> clazz, String orderBy, boolean reuse) 
+			throws IllegalArgumentException {
+		
+		if(clazz == null) {
+			throw new IllegalArgumentException("Clazz argument is null or empty");
+		}
+		
+		Logger.i(DatabaseHandler.class.getSimpleName(), 
+				"iterate " + clazz.getSimpleName() + ", with order " + orderBy);
+		
+		final EntityMapper<T> mapper = EntityMappers.get(clazz);
+		
+		final Cursor c = db.query(
+			mapper.getTableName(),
+			mapper.getColumns(),
+		    null,
+		    null,
+		    null,
+		    null,
+		    orderBy);
+		
+		return new EntityCursor<T>(c, mapper, reuse);
+	}
+	
+	@Override
+	public void close() {
+		synchronized (statements) {
+			statements.close();
+		}
+	}
+	
+	/**
+	 * Adds the seek columns to the mapper projection when they are not on it, 
+	 * at the end so the mapper column indexes do not change.
+	 * @param columns The mapper columns, null for all of them.
+	 * @param column The order column.
+	 * @return The columns to select.
+	 */
+	private static String[] seekColumns(final String[] columns, final String column) {
+		
+		if(columns == null) {
+			return null;
+		}
+		
+		final List<String> seek = new ArrayList<String>(Arrays.asList(columns));
+		if(!seek.contains(DBEntity.COL_ID)) {
+			seek.add(DBEntity.COL_ID);
+		}
+		if(!seek.contains(column)) {
+			seek.add(column);
+		}
+		
+		return seek.size() == columns.length ? columns : seek.toArray(new String[seek.size()]);
+	}
+	
+	/**
+	 * Encodes the continuation token of a page, the id length, the id and the column value.
+	 * @param id The id of the last row.
+	 * @param value The column value of the last row, null when ordering by id.
+	 * @return The token.
+	 */
+	private static String encodeToken(final String id, final String value) {
+		
+		if(id == null) {
+			throw new IllegalStateException("Can not paginate a row with null id");
+		}
+		
+		return String.valueOf(id.length()) + ":" + id + (value == null ? "" : value);
+	}
+	
+	/**
+	 * Decodes the continuation token of a page.
+	 * @param token The token.
+	 * @return The id and the column value of the last row.
+	 * @throws IllegalArgumentException, the token is not valid.
+	 */
+	private static String[] decodeToken(final String token) throws IllegalArgumentException {
+		
+		final int separator = token.indexOf(':');
+		
+		try {
+			final int length = Integer.parseInt(token.substring(0, separator));
+			final int end = separator + 1 + length;
+			return new String[] { token.substring(separator + 1, end), token.substring(end) };
+		} catch (NumberFormatException | IndexOutOfBoundsException e) {
+			throw new IllegalArgumentException("Token argument is not valid: " + token);
+		}
+	}
 	
 }
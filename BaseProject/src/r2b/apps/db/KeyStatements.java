@@ -0,0 +1,217 @@
+/*
+ * KeyStatements
+ * 
+ * 0.3
+ * 
+ * 2026/10/18
+ * 
+ * (The MIT License)
+ * 
+ * Copyright (c) R2B Apps <r2b.apps@gmail.com>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * 'Software'), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED 'AS IS', WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+
+package r2b.apps.db;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import android.annotation.TargetApi;
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
+
+/**
+ * Updates and deletes rows by primary key with compiled statements: 
+ * one UPDATE per table and columns and one DELETE per table are compiled 
+ * once and cached. The key is bound with its type, an integer key with 
+ * bindLong, so "id = ?" is a rowid seek with no string comparison. 
+ * Only update and delete: the lookups of GenericDaoImpl go through 
+ * SQLiteDatabase.query, which binds the key as text and relies on the 
+ * INTEGER affinity of the key column to convert it.
+ * 
+ * The affected rows are returned by executeUpdateDelete on 11+. On API 10 
+ * they are read with changes(), also compiled, on the same transaction as 
+ * the statement, so no other statement of the shared database runs between 
+ * them and both run on the same connection.
+ * 
+ * Not thread safe, the caller must synchronize it. Take the lock inside 
+ * a database transaction, never the other way round: a statement waits 
+ * for the connection, and a thread that holds the lock while another one 
+ * holds the transaction would deadlock with it.
+ */
+final class KeyStatements {
+
+	/**
+	 * Database instance.
+	 */
+	private final SQLiteDatabase db;
+	/**
+	 * Compiled statements by query.
+	 */
+	private final Map<String, SQLiteStatement> statements = new HashMap<String, SQLiteStatement>();
+	/**
+	 * Compiled query of the rows changed by the last statement, null until used.
+	 */
+	private SQLiteStatement changes;
+	
+	/**
+	 * Builder.
+	 * @param db The database instance.
+	 */
+	KeyStatements(SQLiteDatabase db) {
+		this.db = db;
+	}
+	
+	/**
+	 * Updates the row with a key.
+	 * @param table The table.
+	 * @param values The new row values.
+	 * @param key The row key.
+	 * @return The number of updated rows.
+	 */
+	int update(String table, ContentValues values, Object key) {
+		
+		final String[] columns = BulkInserter.columnsOf(values);
+		
+		final StringBuilder sql = new StringBuilder(64)
+			.append("UPDATE ")
+			.append(table)
+			.append(" SET ");
+		for (int i = 0; i < columns.length; i++) {
+			sql.append(i == 0 ? "" : ", ").append(columns[i]).append(" = ?");
+		}
+		sql.append(" WHERE ").append(DBEntity.COL_ID).append(" = ?");
+		
+		final SQLiteStatement statement = statementOf(sql.toString());
+		
+		statement.clearBindings();
+		for (int i = 0; i < columns.length; i++) {
+			BulkInserter.bind(statement, i + 1, values.get(columns[i]));
+		}
+		BulkInserter.bind(statement, columns.length + 1, key);
+		
+		return execute(statement);
+	}
+	
+	/**
+	 * Deletes the row with a key.
+	 * @param table The table.
+	 * @param key The row key.
+	 * @return The number of deleted rows.
+	 */
+	int delete(String table, Object key) {
+		
+		final SQLiteStatement statement = statementOf(
+				"DELETE FROM " + table + " WHERE " + DBEntity.COL_ID + " = ?");
+		
+		statement.clearBindings();
+		BulkInserter.bind(statement, 1, key);
+		
+		return execute(statement);
+	}
+	
+	/**
+	 * Closes the compiled statements.
+	 */
+	void close() {
+		
+		for (SQLiteStatement statement : statements.values()) {
+			statement.close();
+		}
+		
+		statements.clear();
+		
+		if (changes != null) {
+			changes.close();
+			changes = null;
+		}
+	}
+	
+	/**
+	 * Executes an update or delete statement.
+	 * @param statement The bound statement.
+	 * @return The number of changed rows.
+	 */
+	private int execute(SQLiteStatement statement) {
+		
+		if(Build.VERSION.SDK_INT >= 11 /*HONEYCOMB+*/) {
+			return executeUpdateDelete(statement);
+		}
+		
+		db.beginTransaction();
+		try {
+			
+			statement.execute();
+			final int changed = changes();
+			
+			db.setTransactionSuccessful();
+			
+			return changed;
+			
+		} finally {
+			db.endTransaction();
+		}
+	}
+	
+	/**
+	 * Executes an update or delete statement, on 11+.
+	 * @param statement The bound statement.
+	 * @return The number of changed rows.
+	 */
+	@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+	private static int executeUpdateDelete(SQLiteStatement statement) {
+		return statement.executeUpdateDelete();
+	}
+	
+	/**
+	 * Get the number of rows changed by the last statement, 
+	 * call it on the statement transaction.
+	 * @return The number of rows.
+	 */
+	private int changes() {
+		
+		if (changes == null) {
+			changes = db.compileStatement("SELECT changes()");
+		}
+		
+		return (int) changes.simpleQueryForLong();
+	}
+	
+	/**
+	 * Get the compiled statement of a query, compiling it the first time.
+	 * @param query The query.
+	 * @return The statement.
+	 */
+	private SQLiteStatement statementOf(String query) {
+		
+		SQLiteStatement statement = statements.get(query);
+		if (statement == null) {
+			statement = db.compileStatement(query);
+			statements.put(query, statement);
+		}
+		
+		return statement;
+	}
+	
+}
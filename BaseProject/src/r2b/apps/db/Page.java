@@ -0,0 +1,95 @@
+/*
+ * Page
+ * 
+ * 0.3
+ * 
+ * 2026/10/18
+ * 
+ * (The MIT License)
+ * 
+ * Copyright (c) R2B Apps <r2b.apps@gmail.com>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * 'Software'), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED 'AS IS', WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+
+package r2b.apps.db;
+
+import java.util.List;
+
+/**
+ * A page of a keyset paginated list, see DBManager.listPage.
+ * 
+ * The continuation token points after the last item of the page, so the 
+ * next page is a seek on the column index and costs the same at any 
+ * position, instead of skipping the previous rows like an offset.
+ * 
+ * The token keeps the last values as text, so the pages are ordered by 
+ * INTEGER or TEXT columns: a REAL value loses precision as text, and the 
+ * next page could repeat or skip rows.
+ * 
+ * @param <T> Entity
+ */
+public final class Page<T> {
+	
+	/**
+	 * The page items.
+	 */
+	private final List<T> items;
+	/**
+	 * The token of the next page, null on the last one.
+	 */
+	private final String nextToken;
+	
+	/**
+	 * Builder.
+	 * @param items The page items.
+	 * @param nextToken The token of the next page, null on the last one.
+	 */
+	Page(final List<T> items, final String nextToken) {
+		this.items = items;
+		this.nextToken = nextToken;
+	}
+
+	/**
+	 * Get the page items.
+	 * @return The items, or an empty list. Never null.
+	 */
+	public List<T> getItems() {
+		return items;
+	}
+
+	/**
+	 * Get the token to request the next page.
+	 * @return The token, null on the last page.
+	 */
+	public String getNextToken() {
+		return nextToken;
+	}
+	
+	/**
+	 * Check if there are more pages.
+	 * @return True if there is a next page.
+	 */
+	public boolean hasNext() {
+		return nextToken != null;
+	}
+	
+}
@@ -0,0 +1,252 @@
+/*
+ * AdaptiveThreadPoolExecutor
+ * 
+ * 0.3
+ * 
+ * 2026/10/18
+ * 
+ * (The MIT License)
+ * 
+ * Copyright (c) R2B Apps <r2b.apps@gmail.com>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * 'Software'), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED 'AS IS', WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+
+package r2b.apps.lib.taskmanager;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A thread pool that resizes itself between bounds.
+ * 
+ * Each ADAPT_PERIOD, on the task scheduler thread, it checks the queue 
+ * wait time and how many busy workers are blocked (sleeping, waiting on 
+ * a lock or a monitor). When tasks wait too long and every worker is busy, 
+ * the pool grows if the workers are blocked or there are idle processors: 
+ * more threads would not help CPU-bound tasks. When the queue is empty and 
+ * most workers are idle, the pool shrinks. Idle workers time out, 
+ * so an idle pool has no threads.
+ * 
+ * WARNING: A thread blocked on native I/O, like a socket read, is reported 
+ * as runnable by the VM. For those tasks the queue wait time is the signal.
+ */
+class AdaptiveThreadPoolExecutor extends ThreadPoolExecutor {
+	
+	/**
+	 * Milliseconds between two sizing checks.
+	 */
+	private static final long ADAPT_PERIOD = 1000L;
+	/**
+	 * Queue wait time in nanoseconds over which the pool should grow.
+	 */
+	private static final long TARGET_WAIT = TimeUnit.MILLISECONDS.toNanos(50);
+	/**
+	 * Blocked busy workers ratio over which the pool grows beyond the processors.
+	 */
+	private static final double BLOCKED_RATIO = 0.5;
+	/**
+	 * The available processors.
+	 */
+	private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Minimum pool size.
+	 */
+	private final int minPoolSize;
+	/**
+	 * Records the queue wait time.
+	 */
+	private final TaskMetrics metrics;
+	/**
+	 * Runs the sizing checks.
+	 */
+	private final TaskScheduler scheduler;
+	/**
+	 * The live workers.
+	 */
+	private final Set<Worker> workers = Collections.newSetFromMap(new ConcurrentHashMap<Worker, Boolean>());
+	/**
+	 * Total queue wait time on the previous check.
+	 */
+	private long lastWaitTime;
+	/**
+	 * Number of queue waits on the previous check.
+	 */
+	private long lastWaitCount;
+	
+	/**
+	 * Builder.
+	 * @param minPoolSize The minimum pool size.
+	 * @param maxPoolSize The maximum pool size.
+	 * @param keepAliveTime The time an idle worker waits for a task before terminating.
+	 * @param unit The keepAliveTime unit.
+	 * @param queue The task queue.
+	 * @param metrics The metrics that record the queue wait time.
+	 * @param scheduler The scheduler to run the sizing checks.
+	 */
+	AdaptiveThreadPoolExecutor(
+			int minPoolSize, 
+			int maxPoolSize, 
+			long keepAliveTime, 
+			TimeUnit unit, 
+			BlockingQueue<Runnable> queue, 
+			TaskMetrics metrics, 
+			TaskScheduler scheduler) {
+		
+		super(
+				Math.max(minPoolSize, Math.min(maxPoolSize, PROCESSORS)), 
+				maxPoolSize, 
+				keepAliveTime, 
+				unit, 
+				queue);
+		
+		if (minPoolSize < 1 || maxPoolSize < minPoolSize) {
+			throw new IllegalArgumentException("pool size bounds are not valid.");
+		}
+		
+		this.minPoolSize = minPoolSize;
+		this.metrics = metrics;
+		this.scheduler = scheduler;
+		
+		setThreadFactory(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				return new Worker(runnable);
+			}
+		});
+		allowCoreThreadTimeOut(true);
+		
+		scheduleCheck();
+	}
+	
+	/**
+	 * Schedules the next sizing check.
+	 */
+	private void scheduleCheck() {
+		scheduler.schedule(new Runnable() {
+			@Override
+			public void run() {
+				if (!isShutdown()) {
+					adapt();
+					scheduleCheck();
+				}
+			}
+		}, ADAPT_PERIOD, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Grows or shrinks the pool with the current load.
+	 */
+	void adapt() {
+		
+		final int size = getCorePoolSize();
+		final int queued = getQueue().size();
+		
+		// Queue wait time since the previous check, or the wait of the queue head if nothing started
+		final long waitTime = metrics.getWaitTimeTotal();
+		final long waitCount = metrics.getWaitCount();
+		long wait = waitCount > lastWaitCount ? (waitTime - lastWaitTime) / (waitCount - lastWaitCount) : 0;
+		lastWaitTime = waitTime;
+		lastWaitCount = waitCount;
+		
+		final Runnable head = getQueue().peek();
+		if (head instanceof PriorityFutureTask<?>) {
+			wait = Math.max(wait, System.nanoTime() - ((PriorityFutureTask<?>) head).getEnqueueTime());
+		}
+		
+		int busy = 0;
+		int blocked = 0;
+		for (Worker worker : workers) {
+			if (worker.busy) {
+				busy++;
+				if (worker.getState() != Thread.State.RUNNABLE) {
+					blocked++;
+				}
+			}
+		}
+		
+		// Grows fast on load, shrinks slowly
+		if (queued > 0 && wait > TARGET_WAIT && busy >= size) {
+			if (size < getMaximumPoolSize() && (size < PROCESSORS || blocked >= busy * BLOCKED_RATIO)) {
+				setCorePoolSize(Math.min(getMaximumPoolSize(), size + Math.max(1, size / 2)));
+			}
+		}
+		else if (queued == 0 && busy < size / 2 && size > minPoolSize) {
+			setCorePoolSize(Math.max(minPoolSize, Math.max(busy, size - Math.max(1, size / 4))));
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.ThreadPoolExecutor#beforeExecute(java.lang.Thread, java.lang.Runnable)
+	 */
+	@Override
+	protected void beforeExecute(Thread thread, Runnable runnable) {
+		((Worker) thread).busy = true;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.ThreadPoolExecutor#afterExecute(java.lang.Runnable, java.lang.Throwable)
+	 */
+	@Override
+	protected void afterExecute(Runnable runnable, Throwable throwable) {
+		((Worker) Thread.currentThread()).busy = false;
+	}
+	
+	/**
+	 * A pool thread that reports whether it runs a task.
+	 */
+	private final class Worker extends Thread {
+		
+		/**
+		 * True while running a task.
+		 */
+		volatile boolean busy;
+		
+		/**
+		 * Builder.
+		 * @param runnable The pool worker loop.
+		 */
+		Worker(Runnable runnable) {
+			super(runnable);
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Thread#run()
+		 */
+		@Override
+		public void run() {
+			workers.add(this);
+			try {
+				super.run();
+			} finally {
+				workers.remove(this);
+			}
+		}
+		
+	}
+
+}
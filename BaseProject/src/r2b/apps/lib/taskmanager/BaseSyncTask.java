@@ -32,6 +32,9 @@
 
 package r2b.apps.lib.taskmanager;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
 /**
  * This class is useful for packaging any task implementation and 
  * run on a task pool with multithreading and priority support.
@@ -48,11 +51,6 @@ package r2b.apps.lib.taskmanager;
  */
 public abstract class BaseSyncTask<V> extends Task<V> {
 	
-	/**
-	 * The observable task.
-	 */
-	private final BaseSyncTaskObservable<V> observable = new BaseSyncTaskObservable<V>(this);
-	
 	/**
 	 * Builder.
 	 * @param id The task identifier.
@@ -72,46 +70,81 @@ public abstract class BaseSyncTask<V> extends Task<V> {
 	}
 
 	/**
-	 * Adds the specified observer to the list of observers. If it is already 
-	 * registered, it is not added a second time.
+	 * Adds an observer, notified once when the task completes or fails. 
+	 * If the task is already done the observer is notified immediately.
 	 * 
 	 * WARNING: The notify is made in the same thread as the task is running,
-	 * you can not make gui calls on the observer.
+	 * or in the caller thread when the task is already done, 
+	 * you can not make gui calls on the observer. To notify on the main 
+	 * thread use addObserver(observer, MainThreadExecutor.getInstance()).
 	 * 
 	 * @param observer The observer.
 	 */
 	public void addObserver(BaseSyncTaskObserver<V> observer) {
-		this.observable.addObserver(observer);
+		addObserver(observer, null);
 	}
 	
-	/* (non-Javadoc)
-	 * @see r2b.apps.lib.taskmanager.Task#call()
+	/**
+	 * Adds an observer, notified once on the executor when the task completes 
+	 * or fails. If the task is already done the observer is notified immediately.
+	 * 
+	 * @param observer The observer.
+	 * @param executor The executor to notify on, null to notify on the completing thread. 
+	 * MainThreadExecutor notifies on the main thread, batched by frame.
 	 */
-	@Override
-	public final V call() throws Exception {
-		final V result =  super.call();
+	public void addObserver(final BaseSyncTaskObserver<V> observer, final Executor executor) {
+		
+		if (observer == null) {
+			throw new IllegalArgumentException("observer argument is null.");
+		}
 		
-		// Call to Observers
-		this.observable.setChanged();
-		this.observable.notifyObservers(result);
-		// Clear info
-		this.observable.deleteObservers();
+		final Runnable notify = new Runnable() {
+			@Override
+			public void run() {
+				deliver(observer);
+			}
+		};
 		
-		return result;
+		((PriorityFutureTask<V>) priorityFutureTask).addListener(executor == null ? notify : new Runnable() {
+			@Override
+			public void run() {
+				if (!priorityFutureTask.isCancelled()) {
+					executor.execute(notify);
+				}
+			}
+		});
 	}
-
-	/* (non-Javadoc)
-	 * @see r2b.apps.lib.taskmanager.Task#cancel(boolean)
+	
+	/**
+	 * Notifies the task outcome to an observer, nothing if cancelled.
+	 * @param observer The observer.
 	 */
-	@Override
-	public boolean cancel(boolean mayInterruptIfRunning) {
-				
-		boolean exit = super.cancel(mayInterruptIfRunning);
+	private void deliver(BaseSyncTaskObserver<V> observer) {
+		
+		if (priorityFutureTask.isCancelled()) {
+			return;
+		}
 		
-		// Delete observer callbacks
-		this.observable.deleteObservers();
+		final V result;
+		try {
+			result = priorityFutureTask.get();
+		} catch (ExecutionException e) {
+			observer.failed(this, e.getCause());
+			return;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
 		
-		return exit;
+		observer.completed(this, result);
+	}
+	
+	/* (non-Javadoc)
+	 * @see r2b.apps.lib.taskmanager.Task#call()
+	 */
+	@Override
+	public final V call() throws Exception {
+		return super.call();
 	}
 		
 }
@@ -32,27 +32,16 @@
 
 package r2b.apps.lib.taskmanager;
 
-import java.util.Observable;
-import java.util.Observer;
-
 /**
- * Wraps an Observer to have a more suitable update interface.
+ * Completion callback of a BaseSyncTask.
  * 
- * WARNING: The notify is made in the same thread as the task is running, 
- * you can not make direct gui calls on the "completed" method.
+ * WARNING: By default the notify is made in the same thread as the task is running, 
+ * you can not make direct gui calls on the "completed" method. Use an executor 
+ * when adding the observer to choose the notify thread.
  *
  * @param <V> Void or any other object.
  */
-public abstract class BaseSyncTaskObserver<V> implements Observer {
-
-	/* (non-Javadoc)
-	 * @see java.util.Observer#update(java.util.Observable, java.lang.Object)
-	 */
-	@SuppressWarnings("unchecked")
-	@Override
-	public final void update(Observable observable, Object data) {
-		completed(((BaseSyncTaskObservable<V>) observable).getTask(), (V) data);
-	}
+public abstract class BaseSyncTaskObserver<V> {
 
 	/**
 	 * Notify when a task has finished.
@@ -61,5 +50,11 @@ public abstract class BaseSyncTaskObserver<V> implements Observer {
 	 */
 	public abstract void completed(BaseSyncTask<V> task, V data);
 	
+	/**
+	 * Notify when a task has failed, it does nothing by default.
+	 * @param task The failed task.
+	 * @param cause The failure cause.
+	 */
+	public void failed(BaseSyncTask<V> task, Throwable cause) { }
+	
 }
-
@@ -0,0 +1,449 @@
+/*
+ * BoundedPriorityBlockingQueue
+ * 
+ * 0.3
+ * 
+ * 2026/10/18
+ * 
+ * (The MIT License)
+ * 
+ * Copyright (c) R2B Apps <r2b.apps@gmail.com>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * 'Software'), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED 'AS IS', WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+
+package r2b.apps.lib.taskmanager;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A priority blocking queue with a maximum capacity.
+ * 
+ * Besides the blocking queue operations it can remove the lowest priority 
+ * element and the element of a task identifier, used by the overflow policies.
+ */
+class BoundedPriorityBlockingQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+	/**
+	 * The elements.
+	 */
+	private final PriorityQueue<Runnable> queue;
+	/**
+	 * The element comparator.
+	 */
+	private final Comparator<Runnable> comparator;
+	/**
+	 * The maximum number of elements.
+	 */
+	private final int capacity;
+	/**
+	 * Guards all the operations.
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+	/**
+	 * Waiting takes.
+	 */
+	private final Condition notEmpty = lock.newCondition();
+	/**
+	 * Waiting puts.
+	 */
+	private final Condition notFull = lock.newCondition();
+	
+	/**
+	 * Builder.
+	 * @param capacity The maximum number of elements.
+	 * @param comparator The priority comparator.
+	 */
+	public BoundedPriorityBlockingQueue(int capacity, Comparator<Runnable> comparator) {
+		
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity argument is not positive.");
+		}
+		
+		if (comparator == null) {
+			throw new IllegalArgumentException("comparator argument is null.");
+		}
+		
+		this.capacity = capacity;
+		this.comparator = comparator;
+		this.queue = new PriorityQueue<Runnable>(Math.min(capacity, 11), comparator);
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.util.Queue#offer(java.lang.Object)
+	 */
+	@Override
+	public boolean offer(Runnable e) {
+		
+		if (e == null) {
+			throw new NullPointerException("e argument is null.");
+		}
+		
+		lock.lock();
+		try {
+			
+			if (queue.size() >= capacity) {
+				return false;
+			}
+			
+			queue.add(e);
+			notEmpty.signal();
+			return true;
+			
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.BlockingQueue#offer(java.lang.Object, long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public boolean offer(Runnable e, long timeout, TimeUnit unit) throws InterruptedException {
+		
+		if (e == null) {
+			throw new NullPointerException("e argument is null.");
+		}
+		
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			
+			while (queue.size() >= capacity) {
+				if (nanos <= 0) {
+					return false;
+				}
+				nanos = notFull.awaitNanos(nanos);
+			}
+			
+			queue.add(e);
+			notEmpty.signal();
+			return true;
+			
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.BlockingQueue#put(java.lang.Object)
+	 */
+	@Override
+	public void put(Runnable e) throws InterruptedException {
+		
+		if (e == null) {
+			throw new NullPointerException("e argument is null.");
+		}
+		
+		lock.lockInterruptibly();
+		try {
+			
+			while (queue.size() >= capacity) {
+				notFull.await();
+			}
+			
+			queue.add(e);
+			notEmpty.signal();
+			
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.util.Queue#poll()
+	 */
+	@Override
+	public Runnable poll() {
+		lock.lock();
+		try {
+			return dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.BlockingQueue#poll(long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			
+			while (queue.isEmpty()) {
+				if (nanos <= 0) {
+					return null;
+				}
+				nanos = notEmpty.awaitNanos(nanos);
+			}
+			
+			return dequeue();
+			
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.BlockingQueue#take()
+	 */
+	@Override
+	public Runnable take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			
+			while (queue.isEmpty()) {
+				notEmpty.await();
+			}
+			
+			return dequeue();
+			
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Queue#peek()
+	 */
+	@Override
+	public Runnable peek() {
+		lock.lock();
+		try {
+			return queue.peek();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.util.AbstractCollection#size()
+	 */
+	@Override
+	public int size() {
+		lock.lock();
+		try {
+			return queue.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.BlockingQueue#remainingCapacity()
+	 */
+	@Override
+	public int remainingCapacity() {
+		lock.lock();
+		try {
+			return capacity - queue.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.util.AbstractCollection#remove(java.lang.Object)
+	 */
+	@Override
+	public boolean remove(Object o) {
+		lock.lock();
+		try {
+			
+			final boolean removed = queue.remove(o);
+			if (removed) {
+				notFull.signal();
+			}
+			return removed;
+			
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.BlockingQueue#drainTo(java.util.Collection)
+	 */
+	@Override
+	public int drainTo(Collection<? super Runnable> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.BlockingQueue#drainTo(java.util.Collection, int)
+	 */
+	@Override
+	public int drainTo(Collection<? super Runnable> c, int maxElements) {
+		
+		if (c == null) {
+			throw new NullPointerException("c argument is null.");
+		}
+		
+		if (c == this) {
+			throw new IllegalArgumentException("c argument is this queue.");
+		}
+		
+		lock.lock();
+		try {
+			
+			int n = 0;
+			Runnable e;
+			while (n < maxElements && (e = queue.poll()) != null) {
+				c.add(e);
+				n++;
+			}
+			
+			if (n > 0) {
+				notFull.signalAll();
+			}
+			
+			return n;
+			
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns an iterator over a snapshot of the elements, in no particular order.
+	 */
+	@Override
+	public Iterator<Runnable> iterator() {
+		lock.lock();
+		try {
+			return new ArrayList<Runnable>(queue).iterator();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Inserts the element replacing the lowest priority one when the queue is full.
+	 * @param e The element to insert.
+	 * @return The replaced element, the argument if it has the lowest priority 
+	 * and it was not inserted, or null if there was space.
+	 */
+	Runnable offerReplacingLowest(Runnable e) {
+		
+		if (e == null) {
+			throw new NullPointerException("e argument is null.");
+		}
+		
+		lock.lock();
+		try {
+			
+			if (queue.size() < capacity) {
+				queue.add(e);
+				notEmpty.signal();
+				return null;
+			}
+			
+			Runnable lowest = null;
+			for (Runnable item : queue) {
+				if (lowest == null || comparator.compare(item, lowest) > 0) {
+					lowest = item;
+				}
+			}
+			
+			if (lowest == null || comparator.compare(e, lowest) >= 0) {
+				return e;
+			}
+			
+			queue.remove(lowest);
+			queue.add(e);
+			notEmpty.signal();
+			return lowest;
+			
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Inserts the element replacing a queued one of the same task class and identifier. 
+	 * The default identifier, zero, does not replace any.
+	 * @param e The element to insert.
+	 * @param task The task of the element.
+	 * @return The replaced element, the argument if it was not inserted 
+	 * because there is no space and no task with the identifier, or null if there was space.
+	 */
+	Runnable offerReplacingId(Runnable e, Task<?> task) {
+		
+		if (e == null) {
+			throw new NullPointerException("e argument is null.");
+		}
+		
+		lock.lock();
+		try {
+			
+			if (queue.size() < capacity) {
+				queue.add(e);
+				notEmpty.signal();
+				return null;
+			}
+			
+			if (task.getId() == 0) {
+				return e;
+			}
+			
+			for (Runnable item : queue) {
+				final Task<?> queued = item instanceof PriorityFutureTask<?> ? ((PriorityFutureTask<?>) item).getTask() : null;
+				if (queued != null 
+						&& queued.getId() == task.getId() 
+						&& queued.getClass() == task.getClass()) {
+					queue.remove(item);
+					queue.add(e);
+					notEmpty.signal();
+					return item;
+				}
+			}
+			
+			return e;
+			
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Retrieves and removes the head. Call with the lock held.
+	 * @return The head or null if empty.
+	 */
+	private Runnable dequeue() {
+		final Runnable e = queue.poll();
+		if (e != null) {
+			notFull.signal();
+		}
+		return e;
+	}
+
+}
@@ -0,0 +1,245 @@
+/*
+ * LatencyHistogram
+ * 
+ * 0.3
+ * 
+ * 2026/10/18
+ * 
+ * (The MIT License)
+ * 
+ * Copyright (c) R2B Apps <r2b.apps@gmail.com>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * 'Software'), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED 'AS IS', WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+
+package r2b.apps.lib.taskmanager;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear latency histogram in nanoseconds, HDR style. 
+ * 
+ * Each power of two range is split in 16 linear buckets, so the value 
+ * of a bucket is within a 6% of the recorded ones. Values over 2^41 ns 
+ * (about 36 minutes) are recorded on the last bucket.
+ * 
+ * Recording is lock-free and does not allocate. Read a copy, 
+ * from a metrics snapshot, to have consistent values.
+ */
+public final class LatencyHistogram {
+	
+	/**
+	 * Bits of the linear buckets on each power of two.
+	 */
+	private static final int SUB_BUCKET_BITS = 4;
+	/**
+	 * Linear buckets on each power of two.
+	 */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/**
+	 * Highest power of two exponent.
+	 */
+	private static final int MAX_EXPONENT = 40;
+	/**
+	 * Number of buckets.
+	 */
+	private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+	/**
+	 * Highest value with its own bucket.
+	 */
+	private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+	
+	/**
+	 * Count of values per bucket.
+	 */
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	/**
+	 * Number of values.
+	 */
+	private final AtomicLong count = new AtomicLong();
+	/**
+	 * Sum of values.
+	 */
+	private final AtomicLong total = new AtomicLong();
+	/**
+	 * Highest value.
+	 */
+	private final AtomicLong max = new AtomicLong();
+	
+	/**
+	 * Builder.
+	 */
+	LatencyHistogram() {
+		super();
+	}
+	
+	/**
+	 * Records a value.
+	 * @param nanos The latency in nanoseconds, negative values are recorded as zero.
+	 */
+	void record(long nanos) {
+		
+		final long value = nanos < 0 ? 0 : nanos;
+		
+		buckets.incrementAndGet(index(value));
+		count.incrementAndGet();
+		total.addAndGet(value);
+		
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+	
+	/**
+	 * Copies the histogram.
+	 * @return The copy.
+	 */
+	LatencyHistogram copy() {
+		
+		final LatencyHistogram copy = new LatencyHistogram();
+		
+		long copyCount = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			final long bucket = buckets.get(i);
+			copy.buckets.set(i, bucket);
+			copyCount += bucket;
+		}
+		copy.count.set(copyCount);
+		copy.total.set(total.get());
+		copy.max.set(max.get());
+		
+		return copy;
+	}
+	
+	/**
+	 * Adds the values of another histogram. 
+	 * Only for histograms not shared with recording threads.
+	 * @param other The other histogram.
+	 */
+	void add(LatencyHistogram other) {
+		
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets.addAndGet(i, other.buckets.get(i));
+		}
+		count.addAndGet(other.count.get());
+		total.addAndGet(other.total.get());
+		max.set(Math.max(max.get(), other.max.get()));
+	}
+	
+	/**
+	 * Get the number of values.
+	 * @return The count.
+	 */
+	public long getCount() {
+		return count.get();
+	}
+	
+	/**
+	 * Get the sum of values.
+	 * @return The sum in nanoseconds.
+	 */
+	public long getTotal() {
+		return total.get();
+	}
+	
+	/**
+	 * Get the highest value.
+	 * @return The highest value in nanoseconds, zero if empty.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+	
+	/**
+	 * Get the mean value.
+	 * @return The mean in nanoseconds, zero if empty.
+	 */
+	public long getMean() {
+		final long n = count.get();
+		return n == 0 ? 0 : total.get() / n;
+	}
+	
+	/**
+	 * Get the value at a percentile.
+	 * @param percentile The percentile, from 0 to 100.
+	 * @return The highest value of the percentile bucket in nanoseconds, zero if empty.
+	 */
+	public long getPercentile(double percentile) {
+		
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("percentile argument is out of range.");
+		}
+		
+		final long n = count.get();
+		if (n == 0) {
+			return 0;
+		}
+		
+		final long target = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+		
+		long accumulated = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			accumulated += buckets.get(i);
+			if (accumulated >= target) {
+				return Math.min(upperBound(i), max.get());
+			}
+		}
+		
+		return max.get();
+	}
+	
+	/**
+	 * Get the bucket of a value.
+	 * @param value The value, positive.
+	 * @return The bucket index.
+	 */
+	private static int index(long value) {
+		
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		
+		final long clamped = Math.min(value, MAX_VALUE);
+		final int shift = 63 - Long.numberOfLeadingZeros(clamped) - SUB_BUCKET_BITS;
+		
+		return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((clamped >>> shift) - SUB_BUCKETS);
+	}
+	
+	/**
+	 * Get the highest value of a bucket.
+	 * @param index The bucket index.
+	 * @return The value.
+	 */
+	private static long upperBound(int index) {
+		
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		
+		final int shift = (index >> SUB_BUCKET_BITS) - 1;
+		final int subBucket = index & (SUB_BUCKETS - 1);
+		
+		return ((SUB_BUCKETS + subBucket + 1L) << shift) - 1;
+	}
+	
+}
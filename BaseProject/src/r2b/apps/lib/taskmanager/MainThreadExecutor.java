@@ -0,0 +1,273 @@
+/*
+ * MainThreadExecutor
+ * 
+ * 0.3
+ * 
+ * 2026/10/18
+ * 
+ * (The MIT License)
+ * 
+ * Copyright (c) R2B Apps <r2b.apps@gmail.com>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * 'Software'), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED 'AS IS', WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+
+package r2b.apps.lib.taskmanager;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+/**
+ * Runs the commands on the main thread, batched: the commands that arrive 
+ * within one frame are run on one main thread message, in order. 
+ * Use it to notify task results to the views, e.g. 
+ * task.addObserver(observer, MainThreadExecutor.getInstance()), so a burst 
+ * of completions is one message and one layout pass instead of one each.
+ * 
+ * By default a batch runs on the next frame, before its layout pass, with 
+ * the Choreographer on 16+, and on the next main thread message before. 
+ * With a window, the first command of a batch waits up to the window time. 
+ * Commands that arrive while the batch runs go on the next one.
+ */
+public final class MainThreadExecutor implements Executor {
+
+	/**
+	 * One frame at 60 fps, in milliseconds.
+	 */
+	public static final long FRAME_TIME = 16L;
+	
+	/**
+	 * Shared instance.
+	 */
+	private static MainThreadExecutor instance;
+	
+	/**
+	 * The main thread handler.
+	 */
+	private final Handler handler;
+	/**
+	 * Milliseconds from the first command of a batch to its run.
+	 */
+	private final long window;
+	/**
+	 * Posts the batches on the next frame, null to post them on the handler.
+	 */
+	private final FrameFlush frameFlush;
+	/**
+	 * The commands of the next batch, guarded by this.
+	 */
+	private ArrayList<Runnable> pending = new ArrayList<Runnable>();
+	/**
+	 * The commands of the running batch, swapped with pending to not allocate.
+	 */
+	private ArrayList<Runnable> running = new ArrayList<Runnable>();
+	/**
+	 * True when the next batch is posted, guarded by this.
+	 */
+	private boolean posted;
+	
+	/**
+	 * Runs a batch.
+	 */
+	private final Runnable flush = new Runnable() {
+		@Override
+		public void run() {
+			flush();
+		}
+	};
+	
+	/**
+	 * Get the shared instance, it batches by frame.
+	 * @return The shared instance.
+	 */
+	public static synchronized MainThreadExecutor getInstance() {
+		
+		if (instance == null) {
+			instance = new MainThreadExecutor();
+		}
+		
+		return instance;
+	}
+	
+	/**
+	 * Builder.
+	 * Runs each batch on the next frame on 16+, on the next main thread message before.
+	 */
+	public MainThreadExecutor() {
+		
+		this.handler = new Handler(Looper.getMainLooper());
+		this.window = 0;
+		
+		if(Build.VERSION.SDK_INT >= 16 /*JELLY_BEAN+*/) {
+			this.frameFlush = new FrameFlush(handler, flush);
+		}
+		else {
+			this.frameFlush = null;
+		}
+	}
+	
+	/**
+	 * Builder.
+	 * @param window The time from the first command of a batch to its run, 
+	 * zero to batch only the commands that arrive before the main thread is free.
+	 * @param unit The window unit.
+	 */
+	public MainThreadExecutor(long window, TimeUnit unit) {
+		
+		if (window < 0) {
+			throw new IllegalArgumentException("window argument is negative.");
+		}
+		
+		if (unit == null) {
+			throw new IllegalArgumentException("unit argument is null.");
+		}
+		
+		this.handler = new Handler(Looper.getMainLooper());
+		this.window = unit.toMillis(window);
+		this.frameFlush = null;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.Executor#execute(java.lang.Runnable)
+	 */
+	@Override
+	public void execute(Runnable command) {
+		
+		if (command == null) {
+			throw new IllegalArgumentException("command argument is null.");
+		}
+		
+		synchronized (this) {
+			pending.add(command);
+			if (posted) {
+				return;
+			}
+			posted = true;
+		}
+		
+		if (frameFlush != null) {
+			frameFlush.post();
+		}
+		else if (window > 0) {
+			handler.postDelayed(flush, window);
+		}
+		else {
+			handler.post(flush);
+		}
+	}
+	
+	/**
+	 * Runs the pending commands, on the main thread.
+	 */
+	private void flush() {
+		
+		final ArrayList<Runnable> batch;
+		
+		synchronized (this) {
+			batch = pending;
+			pending = running;
+			running = batch;
+			posted = false;
+		}
+		
+		try {
+			final int size = batch.size();
+			for (int i = 0; i < size; i++) {
+				batch.get(i).run();
+			}
+		} finally {
+			batch.clear();
+		}
+	}
+	
+	/**
+	 * Runs the batches on the next frame. The Choreographer of the main thread 
+	 * is taken on the main thread, so the first batch is posted from there.
+	 */
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+	private static final class FrameFlush implements Choreographer.FrameCallback, Runnable {
+		
+		/**
+		 * The main thread handler.
+		 */
+		private final Handler handler;
+		/**
+		 * Runs a batch.
+		 */
+		private final Runnable flush;
+		/**
+		 * The main thread choreographer, null until the first batch.
+		 */
+		private volatile Choreographer choreographer;
+		
+		/**
+		 * Builder.
+		 * @param handler The main thread handler.
+		 * @param flush Runs a batch.
+		 */
+		FrameFlush(Handler handler, Runnable flush) {
+			this.handler = handler;
+			this.flush = flush;
+		}
+		
+		/**
+		 * Posts a batch on the next frame, from any thread.
+		 */
+		void post() {
+			
+			final Choreographer current = choreographer;
+			
+			if (current != null) {
+				current.postFrameCallback(this);
+			}
+			else {
+				handler.post(this);
+			}
+		}
+		
+		/* (non-Javadoc)
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			// On the main thread
+			choreographer = Choreographer.getInstance();
+			choreographer.postFrameCallback(this);
+		}
+
+		/* (non-Javadoc)
+		 * @see android.view.Choreographer.FrameCallback#doFrame(long)
+		 */
+		@Override
+		public void doFrame(long frameTimeNanos) {
+			flush.run();
+		}
+		
+	}
+	
+}
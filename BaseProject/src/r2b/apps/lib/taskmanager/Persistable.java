@@ -0,0 +1,53 @@
+/*
+ * Persistable
+ * 
+ * 0.3
+ * 
+ * 2026/10/18
+ * 
+ * (The MIT License)
+ * 
+ * Copyright (c) R2B Apps <r2b.apps@gmail.com>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * 'Software'), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED 'AS IS', WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+
+package r2b.apps.lib.taskmanager;
+
+import java.io.Serializable;
+
+/**
+ * Marks a task that survives an application restart. 
+ * 
+ * When the task manager shuts down with a persistence file, the queued 
+ * persistable tasks that did not run are serialized and they are executed 
+ * again when the file is restored on the next start. The identifier, 
+ * priority and lane are kept. Persistable tasks can also be executed 
+ * through a PersistentTaskQueue, which stores them before they run.
+ * 
+ * The task must be a top level or static nested class, with serializable 
+ * fields. Its first not serializable superclass needs a constructor without 
+ * arguments, as BaseAsyncTask and BaseSyncTask have. Observers and 
+ * continuations are not kept.
+ */
+public interface Persistable extends Serializable {
+
+}
@@ -0,0 +1,648 @@
+/*
+ * PersistentTaskQueue
+ * 
+ * 0.3
+ * 
+ * 2026/10/18
+ * 
+ * (The MIT License)
+ * 
+ * Copyright (c) R2B Apps <r2b.apps@gmail.com>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * 'Software'), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED 'AS IS', WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+
+package r2b.apps.lib.taskmanager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import r2b.apps.db.DBEntity;
+import r2b.apps.db.DBManager;
+import r2b.apps.db.EntityMapper;
+import r2b.apps.db.EntityMappers;
+import r2b.apps.utils.logger.Logger;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+
+/**
+ * A durable task queue stored on the database, its tasks survive the 
+ * process death. A task executed through the queue is stored before it 
+ * runs and it is deleted when it completes, fails or is cancelled, so the 
+ * tasks on the table when the application starts are the ones that did 
+ * not finish. Call restore on start to execute them again.
+ * 
+ * The writes are group committed: one writer thread stores on one 
+ * transaction all the tasks queued while the previous transaction was 
+ * running, and hands them to the task manager once the transaction is 
+ * committed. Enqueue does not wait for the disk, and a task does not run 
+ * until its row is durable. A task cancelled before it is written is 
+ * never written. If the write fails the task runs without being stored.
+ * 
+ * The task_queue table and its priority index are created, if they do 
+ * not exist, when the queue is built, so the application database 
+ * declaration and version do not need to change.
+ * 
+ * WARNING: A task cancelled by the task manager shutdown is kept, use 
+ * shutdown(boolean) with the queue, the tasks on the queue are not written 
+ * to the shutdown file.
+ */
+public final class PersistentTaskQueue {
+	
+	/**
+	 * The max number of writes on one transaction.
+	 */
+	private static final int MAX_GROUP_SIZE = 256;
+	/**
+	 * Restore order, highest priority first, lowest value, and FIFO on equal priorities.
+	 */
+	private static final String RESTORE_ORDER = Entry.COL_PRIORITY + " ASC, " + DBEntity.COL_ID + " ASC";
+	/**
+	 * The table columns.
+	 */
+	private static final String COLUMNS = DBEntity.COL_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " 
+			+ Entry.COL_TASK_ID + " INTEGER NOT NULL, " 
+			+ Entry.COL_PRIORITY + " INTEGER NOT NULL, " 
+			+ Entry.COL_LANE + " TEXT, " 
+			+ Entry.COL_DATA + " BLOB NOT NULL";
+	
+	static {
+		EntityMappers.register(Entry.class, Entry.MAPPER);
+	}
+	
+	/**
+	 * The task manager that runs the tasks.
+	 */
+	private final TaskManager taskManager;
+	/**
+	 * The database.
+	 */
+	private final DBManager<Integer> db;
+	/**
+	 * The pending writes, in order.
+	 */
+	private final LinkedBlockingQueue<Write> writes = new LinkedBlockingQueue<Write>();
+	/**
+	 * Writes handed to the writer, guarded by writes.
+	 */
+	private long queued;
+	/**
+	 * Writes done by the writer, guarded by writes.
+	 */
+	private long written;
+	/**
+	 * The writer thread, null until the first write.
+	 */
+	private Thread writer;
+	/**
+	 * True when restored.
+	 */
+	private boolean restored;
+	/**
+	 * True when closed.
+	 */
+	private volatile boolean closed;
+	
+	/**
+	 * Builder.
+	 * @param context The application context.
+	 * @param taskManager The task manager that runs the tasks.
+	 */
+	public PersistentTaskQueue(Context context, TaskManager taskManager) {
+		
+		if (context == null) {
+			throw new IllegalArgumentException("context argument is null.");
+		}
+		
+		if (taskManager == null) {
+			throw new IllegalArgumentException("taskManager argument is null.");
+		}
+		
+		this.taskManager = taskManager;
+		this.db = new DBManager<Integer>(context);
+		this.db.createTable(Entry.TABLE_NAME, COLUMNS, Entry.COL_PRIORITY);
+	}
+	
+	/**
+	 * Stores a task and executes it once it is written. The task is serialized 
+	 * on the caller thread, later changes on its fields are not stored.
+	 * @param task The persistable task to execute.
+	 * @return The task result handle, null if the task is null.
+	 * @throws IllegalArgumentException If the task is not Persistable or it can not be serialized.
+	 */
+	public <V> TaskFuture<V> execute(Task<V> task) {
+		
+		if (task == null) {
+			return null;
+		}
+		
+		if (closed) {
+			throw new IllegalStateException("Queue is closed.");
+		}
+		
+		final Entry entry = store(task);
+		task.stored = true;
+		complete(task, entry);
+		write(new Write(entry, task));
+		
+		return new TaskFuture<V>(taskManager, (PriorityFutureTask<V>) task.priorityFutureTask);
+	}
+	
+	/**
+	 * Stores a collection of tasks and executes them once they are written, see TaskManager.executeAll.
+	 * @param tasks The persistable tasks to execute. Null tasks are ignored.
+	 * @throws IllegalArgumentException If a task is not Persistable or it can not be serialized, 
+	 * no task is executed then.
+	 */
+	public void executeAll(List<? extends Task<?>> tasks) {
+		
+		if (tasks == null) {
+			return;
+		}
+		
+		if (closed) {
+			throw new IllegalStateException("Queue is closed.");
+		}
+		
+		final List<Entry> entries = new ArrayList<Entry>(tasks.size());
+		for (Task<?> task : tasks) {
+			entries.add(task != null ? store(task) : null);
+		}
+		
+		for (int i = 0; i < entries.size(); i++) {
+			if (entries.get(i) != null) {
+				tasks.get(i).stored = true;
+				complete(tasks.get(i), entries.get(i));
+				write(new Write(entries.get(i), tasks.get(i)));
+			}
+		}
+	}
+	
+	/**
+	 * Executes the tasks stored by a previous run that did not finish, highest 
+	 * priority first. Call it once on start, before executing new tasks. 
+	 * Tasks that can not be read, e.g. their class has changed, are deleted.
+	 * 
+	 * WARNING: The table is read on the caller thread.
+	 * 
+	 * @return The number of executed tasks, zero if already restored.
+	 */
+	public int restore() {
+		
+		synchronized (this) {
+			if (restored) {
+				return 0;
+			}
+			restored = true;
+		}
+		
+		final long performanceBegin = System.currentTimeMillis();
+		
+		final List<DBEntity<Integer>> rows = db.listAll(Entry.class, RESTORE_ORDER, 0);
+		final List<Task<?>> tasks = new ArrayList<Task<?>>(rows.size());
+		final List<Entry> entries = new ArrayList<Entry>(rows.size());
+		
+		for (DBEntity<Integer> row : rows) {
+			
+			final Entry entry = (Entry) row;
+			final Task<?> task = TaskManager.deserialize(entry.data);
+			
+			if (task != null) {
+				task.restore(entry.taskId, entry.priority, entry.lane);
+				task.stored = true;
+				entry.data = null;
+				tasks.add(task);
+				entries.add(entry);
+			}
+			else {
+				write(new Write(entry, null));
+			}
+		}
+		
+		// The rows are already on the database
+		taskManager.executeAll(tasks);
+		
+		for (int i = 0; i < tasks.size(); i++) {
+			complete(tasks.get(i), entries.get(i));
+		}
+		
+	    Logger.performance(PersistentTaskQueue.class.getSimpleName(), 
+	    		"int restore()", 
+	    		System.currentTimeMillis()-performanceBegin);
+		
+		return tasks.size();
+	}
+	
+	/**
+	 * Waits until the writes requested before the call are on the database, 
+	 * and their tasks handed to the task manager.
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	public void flush() throws InterruptedException {
+		synchronized (writes) {
+			final long target = queued;
+			while (written < target) {
+				writes.wait();
+			}
+		}
+	}
+	
+	/**
+	 * Writes the pending tasks and stops the writer thread. 
+	 * The database is not closed, it is shared.
+	 * Invocation has no additional effect if already closed.
+	 * @throws InterruptedException If interrupted while waiting the writes.
+	 */
+	public void close() throws InterruptedException {
+		
+		if (closed) {
+			return;
+		}
+		
+		flush();
+		closed = true;
+		
+		synchronized (this) {
+			if (writer != null) {
+				writer.interrupt();
+				writer = null;
+			}
+		}
+	}
+	
+	/**
+	 * Serializes a task on a new table entry.
+	 * @param task The persistable task.
+	 * @return The entry, not written yet.
+	 */
+	private Entry store(Task<?> task) {
+		
+		if (!(task instanceof Persistable)) {
+			throw new IllegalArgumentException("task is not Persistable: " + task.getClass().getName());
+		}
+		
+		final Entry entry = new Entry();
+		entry.taskId = task.getId();
+		entry.priority = task.getPriority();
+		entry.lane = task.getLane();
+		
+		try {
+			entry.data = TaskManager.serialize(task);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("task can not be serialized: " + task.getClass().getName(), e);
+		}
+		
+		return entry;
+	}
+	
+	/**
+	 * Deletes the task entry when the task is done, but not when 
+	 * it is cancelled by the task manager shutdown.
+	 * @param task The executed task.
+	 * @param entry The task entry.
+	 */
+	private void complete(Task<?> task, final Entry entry) {
+		
+		final PriorityFutureTask<?> future = (PriorityFutureTask<?>) task.priorityFutureTask;
+		
+		future.addListener(new Runnable() {
+			@Override
+			public void run() {
+				if (!future.isCancelled() || !taskManager.isShutdown()) {
+					entry.done = true;
+					if (!closed) {
+						write(new Write(entry, null));
+					}
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Hands a write to the writer thread, starting it if it is not running.
+	 * @param write The write.
+	 */
+	private void write(Write write) {
+		
+		synchronized (this) {
+			if (writer == null && !closed) {
+				writer = new Thread("TaskManager-queue-writer") {
+					@Override
+					public void run() {
+						writeLoop();
+					}
+				};
+				writer.setDaemon(true);
+				writer.start();
+			}
+		}
+		
+		synchronized (writes) {
+			queued++;
+			writes.add(write);
+		}
+	}
+	
+	/**
+	 * The writer thread loop, writes all the pending writes on each transaction.
+	 */
+	private void writeLoop() {
+		
+		final List<Write> group = new ArrayList<Write>(MAX_GROUP_SIZE);
+		final List<DBEntity<Integer>> inserts = new ArrayList<DBEntity<Integer>>(MAX_GROUP_SIZE);
+		final List<Task<?>> tasks = new ArrayList<Task<?>>(MAX_GROUP_SIZE);
+		final List<DBEntity<Integer>> deletes = new ArrayList<DBEntity<Integer>>(MAX_GROUP_SIZE);
+		
+		while (!closed) {
+			try {
+				
+				group.add(writes.take());
+				writes.drainTo(group, MAX_GROUP_SIZE - 1);
+				
+				// Inserts first, a task cancelled before being written is not written
+				for (Write write : group) {
+					if (write.task != null && !write.entry.done) {
+						inserts.add(write.entry);
+						tasks.add(write.task);
+					}
+				}
+				
+				try {
+					
+					if (!inserts.isEmpty()) {
+						db.bulkInsert(inserts);
+					}
+					
+					// An entry done after the insert check has its delete on this or a later group
+					for (Write write : group) {
+						if (write.task == null && write.entry.getKey() != null) {
+							deletes.add(write.entry);
+						}
+					}
+					
+					if (!deletes.isEmpty()) {
+						db.bulkDelete(deletes);
+					}
+					
+				} catch (RuntimeException e) {
+					Logger.e(PersistentTaskQueue.class.getSimpleName(), "Tasks can not be written, they run without being stored.", e);
+				}
+				
+				for (DBEntity<Integer> entry : inserts) {
+					((Entry) entry).data = null;
+				}
+				
+				// The rows are committed, the tasks can run
+				if (!tasks.isEmpty()) {
+					execute(tasks);
+				}
+				
+				synchronized (writes) {
+					written += group.size();
+					writes.notifyAll();
+				}
+				
+			} catch (InterruptedException e) {
+				// Closed
+			} finally {
+				group.clear();
+				inserts.clear();
+				tasks.clear();
+				deletes.clear();
+			}
+		}
+	}
+	
+	/**
+	 * Hands the written tasks to the task manager. If it is shutdown the 
+	 * tasks are cancelled and their rows kept, as the queued ones.
+	 * @param tasks The written tasks.
+	 */
+	private void execute(List<Task<?>> tasks) {
+		try {
+			taskManager.executeAll(tasks);
+		} catch (RuntimeException e) {
+			Logger.e(PersistentTaskQueue.class.getSimpleName(), "Tasks can not be executed.", e);
+		}
+	}
+	
+	/**
+	 * A pending write.
+	 */
+	private static final class Write {
+		
+		/**
+		 * The entry to write.
+		 */
+		final Entry entry;
+		/**
+		 * The task to run once inserted, null to delete.
+		 */
+		final Task<?> task;
+		
+		/**
+		 * Builder.
+		 * @param entry The entry to write.
+		 * @param task The task to run once inserted, null to delete.
+		 */
+		Write(Entry entry, Task<?> task) {
+			this.entry = entry;
+			this.task = task;
+		}
+		
+	}
+	
+	/**
+	 * A stored task, a row of the task_queue table. 
+	 * Public for the database layer, it is not meant to be used directly.
+	 */
+	public static final class Entry implements DBEntity<Integer> {
+		
+		/**
+		 * Table name.
+		 */
+		public static final String TABLE_NAME = "task_queue";
+		/**
+		 * Task identifier column.
+		 */
+		public static final String COL_TASK_ID = "task_id";
+		/**
+		 * Task priority column, indexed.
+		 */
+		public static final String COL_PRIORITY = "priority";
+		/**
+		 * Task lane column.
+		 */
+		public static final String COL_LANE = "lane";
+		/**
+		 * Serialized task column.
+		 */
+		public static final String COL_DATA = "data";
+		
+		/**
+		 * Reads the rows by position, without reflection.
+		 */
+		static final EntityMapper<Entry> MAPPER = new EntityMapper<Entry>() {
+			
+			/**
+			 * The selected columns.
+			 */
+			private final String[] columns = { COL_ID, COL_TASK_ID, COL_PRIORITY, COL_LANE, COL_DATA };
+
+			@Override
+			public String getTableName() {
+				return TABLE_NAME;
+			}
+
+			@Override
+			public String[] getColumns() {
+				return columns;
+			}
+
+			@Override
+			public Entry newEntity() {
+				return new Entry();
+			}
+
+			@Override
+			public Entry read(Cursor c, Entry entry) {
+				entry.key = c.getInt(0);
+				entry.taskId = c.getLong(1);
+				entry.priority = c.getInt(2);
+				entry.lane = c.isNull(3) ? null : c.getString(3);
+				entry.data = c.getBlob(4);
+				return entry;
+			}
+			
+		};
+		
+		/**
+		 * Row identifier, null until written.
+		 */
+		private volatile Integer key;
+		/**
+		 * Task identifier.
+		 */
+		long taskId;
+		/**
+		 * Task priority value.
+		 */
+		int priority;
+		/**
+		 * Task lane, null for the default one.
+		 */
+		String lane;
+		/**
+		 * Serialized task, released once written.
+		 */
+		byte[] data;
+		/**
+		 * True when the task is done.
+		 */
+		volatile boolean done;
+		
+		/**
+		 * Builder.
+		 */
+		public Entry() {
+			super();
+		}
+
+		/* (non-Javadoc)
+		 * @see r2b.apps.db.DBEntity#getTableName()
+		 */
+		@Override
+		public String getTableName() {
+			return TABLE_NAME;
+		}
+
+		/* (non-Javadoc)
+		 * @see r2b.apps.db.DBEntity#getKey()
+		 */
+		@Override
+		public Integer getKey() {
+			return key;
+		}
+
+		/* (non-Javadoc)
+		 * @see r2b.apps.db.DBEntity#setKey(java.lang.Object)
+		 */
+		@Override
+		public void setKey(Integer id) {
+			this.key = id;
+		}
+
+		/* (non-Javadoc)
+		 * @see r2b.apps.db.DBEntity#getTableContentValues()
+		 */
+		@Override
+		public ContentValues getTableContentValues() {
+			
+			final ContentValues values = new ContentValues();
+			
+			if (key != null) {
+				values.put(COL_ID, key);
+			}
+			values.put(COL_TASK_ID, taskId);
+			values.put(COL_PRIORITY, priority);
+			if (lane != null) {
+				values.put(COL_LANE, lane);
+			}
+			else {
+				values.putNull(COL_LANE);
+			}
+			values.put(COL_DATA, data);
+			
+			return values;
+		}
+
+		/* (non-Javadoc)
+		 * @see r2b.apps.db.DBEntity#valueOf(android.database.Cursor)
+		 */
+		@Override
+		public DBEntity<Integer> valueOf(Cursor c) {
+			
+			final Entry entry = new Entry();
+			
+			entry.key = c.getInt(c.getColumnIndexOrThrow(COL_ID));
+			entry.taskId = c.getLong(c.getColumnIndexOrThrow(COL_TASK_ID));
+			entry.priority = c.getInt(c.getColumnIndexOrThrow(COL_PRIORITY));
+			final int laneIndex = c.getColumnIndexOrThrow(COL_LANE);
+			entry.lane = c.isNull(laneIndex) ? null : c.getString(laneIndex);
+			entry.data = c.getBlob(c.getColumnIndexOrThrow(COL_DATA));
+			
+			return entry;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return TABLE_NAME + "[" + key + ", task " + taskId + ", priority " + priority + "]";
+		}
+		
+	}
+	
+}
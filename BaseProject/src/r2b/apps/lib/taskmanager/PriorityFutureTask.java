@@ -32,19 +32,99 @@
 
 package r2b.apps.lib.taskmanager;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * Wraps a priority attribute on a FutureTask<V>.
+ * 
+ * Also keeps a lock-free stack of completion listeners, run once when the 
+ * future is done (completed, failed or cancelled).
+ * 
  * @param <V> Void or any other object.
  */
 class PriorityFutureTask<V> extends FutureTask<V> {
 
+	/**
+	 * Enqueue sequence generator.
+	 */
+	private static final AtomicLong SEQUENCER = new AtomicLong();
+	/**
+	 * Marks the listener stack as fired, later listeners run immediately.
+	 */
+	private static final Listener FIRED = new Listener(null);
+	/**
+	 * Atomic access to the listener stack without an object per future.
+	 */
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<PriorityFutureTask, Listener> LISTENERS = 
+			AtomicReferenceFieldUpdater.newUpdater(PriorityFutureTask.class, Listener.class, "listeners");
+	
 	/**
 	 * The future task priority.
 	 */
 	private int priority;
+	/**
+	 * The wrapped task, null for plain callables and runnables.
+	 */
+	private Task<V> task;
+	/**
+	 * The enqueue order, FIFO tie-break between equal priorities.
+	 */
+	private long sequence;
+	/**
+	 * The enqueue time in nanoseconds, used for priority aging.
+	 */
+	private long enqueueTime;
+	/**
+	 * The completion listeners stack head, FIRED once done.
+	 */
+	private volatile Listener listeners;
+	/**
+	 * Maximum run time in nanoseconds, zero for no timeout.
+	 */
+	private long timeout;
+	/**
+	 * Latest System.currentTimeMillis() to start, zero for no deadline.
+	 */
+	private long deadline;
+	/**
+	 * Schedules the timeout, set when the task is queued with a timeout.
+	 */
+	private TaskScheduler watchdog;
+	/**
+	 * The thread running the task, guarded by this.
+	 */
+	private Thread runner;
+	/**
+	 * Records the run, set when the task is queued.
+	 */
+	private TaskMetrics metrics;
+	/**
+	 * True if the deadline expired before start.
+	 */
+	private volatile boolean expired;
+	/**
+	 * True if the run exceeded the timeout.
+	 */
+	private volatile boolean timedOut;
+	/**
+	 * Schedules the next run of a periodic task, null if it is not periodic.
+	 */
+	private volatile Runnable periodic;
+	/**
+	 * Listeners of the end of the next run, guarded by this.
+	 */
+	private List<Runnable> runListeners;
 	
 	/**
 	 * Builder.
@@ -83,6 +163,447 @@ class PriorityFutureTask<V> extends FutureTask<V> {
 		
 		this.priority = priority;
 	}
+	
+	/**
+	 * Gets the enqueue order.
+	 * @return The sequence number, zero if never enqueued.
+	 */
+	final long getSequence() {
+		return sequence;
+	}
+	
+	/**
+	 * Gets the enqueue time.
+	 * @return The System.nanoTime() of the enqueue.
+	 */
+	final long getEnqueueTime() {
+		return enqueueTime;
+	}
+	
+	/**
+	 * Stamps the enqueue order and time. Call it just before queuing the task.
+	 */
+	final void enqueued() {
+		this.sequence = SEQUENCER.incrementAndGet();
+		this.enqueueTime = System.nanoTime();
+	}
+	
+	/**
+	 * Gets the wrapped task.
+	 * @return The task, null for plain callables and runnables.
+	 */
+	final Task<V> getTask() {
+		return task;
+	}
+	
+	/**
+	 * Sets the wrapped task.
+	 * @param task The task.
+	 */
+	final void setTask(Task<V> task) {
+		this.task = task;
+	}
 
-}
+	
+	/**
+	 * Gets the timeout.
+	 * @return The maximum run time in nanoseconds, zero for no timeout.
+	 */
+	final long getTimeout() {
+		return timeout;
+	}
+	
+	/**
+	 * Sets the timeout.
+	 * @param timeout The maximum run time in nanoseconds, zero for no timeout.
+	 */
+	final void setTimeout(long timeout) {
+		
+		if (timeout < 0) {
+			throw new IllegalArgumentException("timeout argument is negative.");
+		}
+		
+		this.timeout = timeout;
+	}
+	
+	/**
+	 * Gets the deadline.
+	 * @return The latest System.currentTimeMillis() to start, zero for no deadline.
+	 */
+	final long getDeadline() {
+		return deadline;
+	}
+	
+	/**
+	 * Sets the deadline.
+	 * @param deadline The latest System.currentTimeMillis() to start, zero for no deadline.
+	 */
+	final void setDeadline(long deadline) {
+		
+		if (deadline < 0) {
+			throw new IllegalArgumentException("deadline argument is negative.");
+		}
+		
+		this.deadline = deadline;
+	}
+	
+	/**
+	 * Sets the scheduler that interrupts the task on timeout.
+	 * @param watchdog The scheduler.
+	 */
+	final void setWatchdog(TaskScheduler watchdog) {
+		this.watchdog = watchdog;
+	}
+	
+	/**
+	 * Gets the metrics that record the run.
+	 * @return The metrics, null if the task has not been queued.
+	 */
+	final TaskMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Sets the metrics that record the run.
+	 * @param metrics The metrics.
+	 */
+	final void setMetrics(TaskMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Check the deadline.
+	 * @return True if the deadline has passed.
+	 */
+	final boolean isDeadlineExpired() {
+		return deadline > 0 && System.currentTimeMillis() > deadline;
+	}
+	
+	/**
+	 * Gets whether the task expired.
+	 * @return True if the deadline expired before start.
+	 */
+	final boolean isExpired() {
+		return expired;
+	}
+	
+	/**
+	 * Gets whether the task timed out.
+	 * @return True if the run exceeded the timeout.
+	 */
+	final boolean isTimedOut() {
+		return timedOut;
+	}
+	
+	/**
+	 * Fails the task because its deadline has passed, if it is not done.
+	 * @return True if it has expired, false if it was done.
+	 */
+	final boolean expire() {
+		
+		if (isDone()) {
+			return false;
+		}
+		
+		expired = true;
+		setException(new TimeoutException("Task deadline expired before start."));
+		
+		return true;
+	}
+	
+	/**
+	 * Makes the task periodic: each run does not set the result, so it can 
+	 * run again, and schedules the next one. The deadline and the timeout 
+	 * apply to each run. It ends when a run fails or the task is cancelled.
+	 * @param next Schedules the next run, called after each run that can run again.
+	 */
+	final void setPeriodic(Runnable next) {
+		this.periodic = next;
+	}
+	
+	/**
+	 * Adds a listener of the end of the next run, or of the task if it is 
+	 * done before. It runs once, immediately if the task is already done.
+	 * @param listener The listener.
+	 */
+	final void addRunListener(Runnable listener) {
+		
+		if (listener == null) {
+			throw new IllegalArgumentException("listener argument is null.");
+		}
+		
+		synchronized (this) {
+			if (!isDone()) {
+				if (runListeners == null) {
+					runListeners = new ArrayList<Runnable>(2);
+				}
+				runListeners.add(listener);
+				return;
+			}
+		}
+		
+		listener.run();
+	}
+	
+	/**
+	 * Runs the task, unless its deadline has passed. 
+	 * With timeout, the task fails and its thread is interrupted when it runs too long.
+	 */
+	@Override
+	public void run() {
+		
+		final TaskMetrics metrics = this.metrics;
+		
+		try {
+			
+			if (isDeadlineExpired()) {
+				if (expire() && metrics != null) {
+					metrics.expired();
+				}
+				return;
+			}
+			
+			boolean again;
+			if (metrics == null) {
+				again = runWithTimeout();
+			}
+			else {
+				final long start = metrics.started(this);
+				try {
+					again = runWithTimeout();
+				} finally {
+					metrics.finished(this, start);
+				}
+			}
+			
+			final Runnable next = periodic;
+			if (again && next != null) {
+				next.run();
+			}
+			
+		} finally {
+			fireRunListeners();
+		}
+	}
+	
+	/**
+	 * Runs the task once, resetting it if it is periodic.
+	 * @return True if it is periodic and can run again.
+	 */
+	private boolean runOnce() {
+		
+		if (periodic == null) {
+			super.run();
+			return false;
+		}
+		
+		return runAndReset();
+	}
+	
+	/**
+	 * Runs the task, with the timeout watchdog if there is a timeout.
+	 * @return True if it is periodic and can run again.
+	 */
+	private boolean runWithTimeout() {
+		
+		if (timeout == 0 || watchdog == null) {
+			return runOnce();
+		}
+		
+		synchronized (this) {
+			runner = Thread.currentThread();
+		}
+		
+		final TaskScheduler.Entry entry = watchdog.schedule(new Runnable() {
+			@Override
+			public void run() {
+				timeout();
+			}
+		}, timeout, TimeUnit.NANOSECONDS);
+		
+		try {
+			return runOnce();
+		} finally {
+			entry.cancel();
+			synchronized (this) {
+				runner = null;
+			}
+		}
+	}
+	
+	/**
+	 * Runs and clears the listeners of the run end.
+	 */
+	private void fireRunListeners() {
+		
+		final List<Runnable> fired;
+		synchronized (this) {
+			fired = runListeners;
+			runListeners = null;
+		}
+		
+		if (fired == null) {
+			return;
+		}
+		
+		for (Runnable listener : fired) {
+			try {
+				listener.run();
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Fails the task and interrupts its thread, if it is still running.
+	 */
+	private synchronized void timeout() {
+		if (runner != null && !isDone()) {
+			timedOut = true;
+			setException(new TimeoutException("Task timeout."));
+			runner.interrupt();
+		}
+	}
+	
+	/**
+	 * Adds a completion listener. It runs on the thread that completes the future, 
+	 * or immediately on the caller thread if the future is already done.
+	 * @param listener The listener.
+	 */
+	final void addListener(Runnable listener) {
+		
+		if (listener == null) {
+			throw new IllegalArgumentException("listener argument is null.");
+		}
+		
+		final Listener node = new Listener(listener);
+		
+		for (;;) {
+			
+			final Listener head = listeners;
+			
+			if (head == FIRED) {
+				listener.run();
+				return;
+			}
+			
+			node.next = head;
+			if (LISTENERS.compareAndSet(this, head, node)) {
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Completes this future with the outcome of another one, already done.
+	 * @param source The done future.
+	 */
+	@SuppressWarnings("unchecked")
+	final void completeFrom(Future<?> source) {
+		
+		if (source.isCancelled()) {
+			cancel(false);
+			return;
+		}
+		
+		try {
+			set((V) source.get());
+		} catch (ExecutionException e) {
+			setException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			setException(e);
+		}
+	}
+	
+	/**
+	 * Completes this future with a value, if it is not done.
+	 * @param value The result.
+	 */
+	final void complete(V value) {
+		set(value);
+	}
+	
+	/**
+	 * Completes this future with a failure, if it is not done.
+	 * @param cause The failure cause.
+	 */
+	final void fail(Throwable cause) {
+		setException(cause);
+	}
+	
+	/**
+	 * Gets the failure of a done future.
+	 * @return The failure cause, a CancellationException if cancelled, 
+	 * or null if it completed normally.
+	 */
+	final Throwable getFailure() {
+		try {
+			get();
+			return null;
+		} catch (CancellationException e) {
+			return e;
+		} catch (ExecutionException e) {
+			return e.getCause();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return e;
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.FutureTask#done()
+	 */
+	@Override
+	protected void done() {
+		
+		// Done before or during a run
+		fireRunListeners();
+		
+		Listener head = LISTENERS.getAndSet(this, FIRED);
+		
+		// Reverse the stack to run the listeners on addition order
+		Listener ordered = null;
+		while (head != null && head != FIRED) {
+			final Listener next = head.next;
+			head.next = ordered;
+			ordered = head;
+			head = next;
+		}
+		
+		while (ordered != null) {
+			try {
+				ordered.listener.run();
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+			ordered = ordered.next;
+		}
+	}
+	
+	/**
+	 * A node of the listener stack.
+	 */
+	private static final class Listener {
+		
+		/**
+		 * The listener.
+		 */
+		final Runnable listener;
+		/**
+		 * The next node.
+		 */
+		Listener next;
+		
+		/**
+		 * Builder.
+		 * @param listener The listener.
+		 */
+		Listener(Runnable listener) {
+			this.listener = listener;
+		}
+		
+	}
 
+}
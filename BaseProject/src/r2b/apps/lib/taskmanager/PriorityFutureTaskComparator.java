@@ -33,13 +33,64 @@
 package r2b.apps.lib.taskmanager;
 
 import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Compares the priority of PriorityFutureTask<V> classes.
  * It is useful for priority collections.
+ * 
+ * Equal priorities are ordered by enqueue sequence (FIFO). 
+ * 
+ * With aging the effective priority of a task improves with the time it is 
+ * queued, so low priority tasks are not starved by a sustained load of 
+ * high priority ones: effective priority = priority - queued time / aging step. 
+ * 
+ * The boost is capped just under VERY_HIGH, so starvation relief does not 
+ * invert urgent work: CRITICAL and VERY_HIGH tasks do not age and are never 
+ * passed by an aged task. While no task reaches the cap all of them age at the 
+ * same rate and the order between two queued tasks does not change. Once an 
+ * old task is capped, a newer task of a better level can pass it while queued, 
+ * a heap may then serve the old one first.
  */
 class PriorityFutureTaskComparator implements Comparator<Runnable> {
 
+	/**
+	 * The distance between two consecutive priority levels.
+	 */
+	private static final int LEVEL = PRIORITY.DEFAULT.getValue() - PRIORITY.HIGH.getValue();
+	/**
+	 * The best priority value aging can reach, worse than VERY_HIGH.
+	 */
+	private static final int AGING_LIMIT = PRIORITY.VERY_HIGH.getValue() + 1;
+	
+	/**
+	 * Nanoseconds a task needs to wait to improve its priority value in one unit. 
+	 * Zero for no aging.
+	 */
+	private final long agingStep;
+	
+	/**
+	 * Builder. Without aging, only priority and FIFO order.
+	 */
+	public PriorityFutureTaskComparator() {
+		this.agingStep = 0;
+	}
+	
+	/**
+	 * Builder. With aging.
+	 * @param agingTime The time a queued task needs to climb one priority level. 
+	 * Zero or negative for no aging.
+	 * @param unit The agingTime unit.
+	 */
+	public PriorityFutureTaskComparator(long agingTime, TimeUnit unit) {
+		
+		if (unit == null) {
+			throw new IllegalArgumentException("unit argument is null.");
+		}
+		
+		this.agingStep = agingTime > 0 ? Math.max(1L, unit.toNanos(agingTime) / LEVEL) : 0;
+	}
+
 	/* (non-Javadoc)
 	 * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
 	 */
@@ -62,8 +113,41 @@ class PriorityFutureTaskComparator implements Comparator<Runnable> {
 			throw new ClassCastException("rhs argument must be PriorityFutureTask<?> class.");
 		}
 		
-		return Integer.valueOf(((PriorityFutureTask<?>)lhs).getPriority()).
-				compareTo(Integer.valueOf(((PriorityFutureTask<?>)rhs).getPriority()));
+		final PriorityFutureTask<?> left = (PriorityFutureTask<?>) lhs;
+		final PriorityFutureTask<?> right = (PriorityFutureTask<?>) rhs;
+		
+		long diff;
+		
+		if (agingStep > 0) {
+			final long now = System.nanoTime();
+			diff = effectivePriority(left, now) - effectivePriority(right, now);
+		}
+		else {
+			diff = left.getPriority() - right.getPriority();
+		}
+		
+		if (diff == 0) {
+			diff = left.getSequence() - right.getSequence();
+		}
+		
+		return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+	}
+	
+	/**
+	 * Get the aged priority of a task, in aging steps.
+	 * @param task The task.
+	 * @param now The System.nanoTime() time.
+	 * @return The priority value times the aging step, minus the capped queued time.
+	 */
+	private long effectivePriority(PriorityFutureTask<?> task, long now) {
+		
+		final int priority = task.getPriority();
+		
+		// Never over the aging limit
+		final long units = Math.max(0, priority - AGING_LIMIT);
+		final long boost = Math.min(Math.max(0, now - task.getEnqueueTime()), units * agingStep);
+		
+		return priority * agingStep - boost;
 	}
 
 }
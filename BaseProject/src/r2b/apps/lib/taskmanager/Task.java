@@ -33,9 +33,12 @@
 package r2b.apps.lib.taskmanager;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
-import r2b.apps.utils.logger.Logger;;
+import r2b.apps.utils.logger.Logger;
 
 /**
  * This class is useful for packaging any task implementation and 
@@ -47,8 +50,13 @@ import r2b.apps.utils.logger.Logger;;
  *
  * @param <V> Void or any other object.
  */
-abstract class Task<V> implements Callable<V> {
+public abstract class Task<V> implements Callable<V> {
 
+	/**
+	 * Task names by class, to not build them on each run.
+	 */
+	private static final ConcurrentMap<Class<?>, String> NAMES = new ConcurrentHashMap<Class<?>, String>();
+	
 	/**
 	 * The FutureTasks<V> to run.
 	 * It extends a priority field.
@@ -58,6 +66,19 @@ abstract class Task<V> implements Callable<V> {
 	 * Task identifier.
 	 */
 	private long id;
+	/**
+	 * The lane to run on, null for the default one.
+	 */
+	private String lane;
+	/**
+	 * The tag of the limits, null to use the class name.
+	 */
+	private String tag;
+	/**
+	 * True when the task is stored on a PersistentTaskQueue, 
+	 * it is not written to the shutdown file.
+	 */
+	volatile boolean stored;
 	
 	/**
 	 * Builder.
@@ -84,8 +105,65 @@ abstract class Task<V> implements Callable<V> {
 		priorityFutureTask = new PriorityFutureTask<V>(callable);
 		// Sets priority
 		((PriorityFutureTask<V>) priorityFutureTask).setPriority(priority.getValue());
+		// Links back the task, needed to identify queued tasks
+		((PriorityFutureTask<V>) priorityFutureTask).setTask(this);
 	}
 
+	/**
+	 * Get the lane the task runs on.
+	 * @return The lane name, null for the default one.
+	 */
+	public String getLane() {
+		return lane;
+	}
+	
+	/**
+	 * Sets the lane to run on, e.g. TaskManager.LANE_IO for blocking I/O 
+	 * tasks. A lane has its own threads, so slow tasks on a lane do not 
+	 * hold the workers of the others. Set it before executing the task.
+	 * @param lane The lane name, null or unknown for the default one, LANE_CPU.
+	 */
+	public void setLane(String lane) {
+		this.lane = lane;
+	}
+	
+	/**
+	 * Get the tag the task manager limits apply to.
+	 * @return The tag, null if the limits of the class name apply.
+	 */
+	public String getTag() {
+		return tag;
+	}
+	
+	/**
+	 * Sets the tag the task manager limits apply to, see 
+	 * TaskManager.Builder.setConcurrencyLimit and setRateLimit. 
+	 * Tasks of different classes can share limits with the same tag. 
+	 * Set it before executing the task, it is not persisted.
+	 * @param tag The tag, null to use the class name.
+	 */
+	public void setTag(String tag) {
+		this.tag = tag;
+	}
+	
+	/**
+	 * Restores the state of a deserialized persistable task, 
+	 * not kept by the serialization.
+	 * @param id The task identifier.
+	 * @param priority The task priority value.
+	 * @param lane The lane name, null for the default one.
+	 */
+	void restore(long id, int priority, String lane) {
+		
+		if (priorityFutureTask == null) {
+			throw new IllegalStateException("priorityFutureTask is null.");
+		}
+		
+		this.id = id;
+		this.lane = lane;
+		((PriorityFutureTask<V>) priorityFutureTask).setPriority(priority);
+	}
+	
 	/**
 	 * Attempts to cancel execution of this task. This attempt will fail if the task has already completed, 
 	 * has already been cancelled, or could not be cancelled for some other reason. If successful, and this 
@@ -107,6 +185,42 @@ abstract class Task<V> implements Callable<V> {
 		return priorityFutureTask.cancel(mayInterruptIfRunning);
 	}
 	
+	/**
+	 * Sets the maximum run time. When it is exceeded the task fails with a 
+	 * TimeoutException and its thread is interrupted, the doInBackground code 
+	 * should check the interrupted status on long operations. 
+	 * Set it before executing the task.
+	 * @param timeout The maximum run time, zero for no timeout.
+	 * @param unit The timeout unit.
+	 */
+	public void setTimeout(long timeout, TimeUnit unit) {
+		
+		if (unit == null) {
+			throw new IllegalArgumentException("unit argument is null.");
+		}
+		
+		if (priorityFutureTask == null) {
+			throw new IllegalStateException("priorityFutureTask is null.");
+		}
+		
+		((PriorityFutureTask<V>) priorityFutureTask).setTimeout(unit.toNanos(timeout));
+	}
+	
+	/**
+	 * Sets the latest time to start the task. If it has not started when the 
+	 * deadline passes, it is not run and it fails with a TimeoutException. 
+	 * Set it before executing the task.
+	 * @param deadline The System.currentTimeMillis() deadline, zero for no deadline.
+	 */
+	public void setDeadline(long deadline) {
+		
+		if (priorityFutureTask == null) {
+			throw new IllegalStateException("priorityFutureTask is null.");
+		}
+		
+		((PriorityFutureTask<V>) priorityFutureTask).setDeadline(deadline);
+	}
+	
 	/**
 	 * Executes the task on background.
 	 * Add here your background code.
@@ -147,20 +261,50 @@ abstract class Task<V> implements Callable<V> {
 		}
 		
 		// Useful to identify the task on debug
-		Thread.currentThread().setName(this.getClass().getSimpleName() + "<" + String.valueOf(id) + ">");
+		final String name = nameOf(getClass());
+		final Thread thread = Thread.currentThread();
+		if (thread.getName() != name) {
+			thread.setName(name);
+		}
+		
+		// The run time is recorded by the metrics, only sampled runs are logged
+		final TaskMetrics metrics = ((PriorityFutureTask<V>) priorityFutureTask).getMetrics();
+		if (metrics == null || !metrics.isTraced((PriorityFutureTask<V>) priorityFutureTask)) {
+			return doInBackground();
+		}
 		
-		long begin = System.currentTimeMillis();
+		final long begin = System.nanoTime();
 		
-		V result = doInBackground();
+		final V result = doInBackground();
 		
 		Logger.performance(
-				this.getClass().getSimpleName(), 
+				name + "<" + id + ">", 
 				"V doInBackground()", 
-				System.currentTimeMillis()-begin);
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin));
 		
 		return result;
 		
 	}
+	
+	/**
+	 * Get the task name of a class, cached.
+	 * @param clazz The task class.
+	 * @return The class simple name.
+	 */
+	private static String nameOf(Class<?> clazz) {
+		
+		String name = NAMES.get(clazz);
+		
+		if (name == null) {
+			name = clazz.getSimpleName();
+			final String previous = NAMES.putIfAbsent(clazz, name);
+			if (previous != null) {
+				name = previous;
+			}
+		}
+		
+		return name;
+	}
 
 }
 
@@ -0,0 +1,108 @@
+/*
+ * TaskBatch
+ * 
+ * 0.3
+ * 
+ * 2026/10/18
+ * 
+ * (The MIT License)
+ * 
+ * Copyright (c) R2B Apps <r2b.apps@gmail.com>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * 'Software'), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED 'AS IS', WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+
+package r2b.apps.lib.taskmanager;
+
+import java.util.List;
+
+/**
+ * Packages several future tasks of the same priority in one queue entry.
+ * 
+ * The batch is queued and taken as a single task, so a batch of N tasks costs 
+ * one queue lock acquisition and one worker wake up instead of N. The worker 
+ * runs the tasks one after another, skipping the cancelled ones.
+ */
+class TaskBatch extends PriorityFutureTask<Void> {
+
+	/**
+	 * The batched tasks.
+	 */
+	private final PriorityFutureTask<?>[] tasks;
+	
+	/**
+	 * Builder.
+	 * @param tasks The tasks to run, all with the same priority.
+	 */
+	public TaskBatch(List<PriorityFutureTask<?>> tasks) {
+		this(tasks.toArray(new PriorityFutureTask<?>[tasks.size()]));
+	}
+	
+	/**
+	 * Builder.
+	 * @param tasks The tasks to run.
+	 */
+	private TaskBatch(final PriorityFutureTask<?>[] tasks) {
+		super(new Runnable() {
+			@Override
+			public void run() {
+				for (PriorityFutureTask<?> task : tasks) {
+					// Clear interrupts of previous tasks, e.g. a late timeout, 
+					// as the pool does between its tasks
+					Thread.interrupted();
+					// A cancelled future does nothing
+					task.run();
+				}
+			}
+		}, null);
+		
+		if (tasks.length == 0) {
+			throw new IllegalArgumentException("tasks argument is empty.");
+		}
+		
+		this.tasks = tasks;
+		setPriority(tasks[0].getPriority());
+	}
+	
+	/**
+	 * Get the batched tasks.
+	 * @return The tasks.
+	 */
+	PriorityFutureTask<?>[] getTasks() {
+		return tasks;
+	}
+
+	/**
+	 * Cancels the batch and all its tasks.
+	 */
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		
+		boolean exit = super.cancel(mayInterruptIfRunning);
+		
+		for (PriorityFutureTask<?> task : tasks) {
+			exit |= task.cancel(mayInterruptIfRunning);
+		}
+		
+		return exit;
+	}
+	
+}
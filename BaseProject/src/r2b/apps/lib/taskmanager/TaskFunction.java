@@ -1,9 +1,9 @@
 /*
- * BaseSyncTaskObservable
+ * TaskFunction
  * 
- * 0.2
+ * 0.3
  * 
- * 2014/06/21
+ * 2026/10/18
  * 
  * (The MIT License)
  * 
@@ -32,45 +32,20 @@
 
 package r2b.apps.lib.taskmanager;
 
-import java.util.Observable;
-
 /**
- * 
- * Aggregates a BaseSyncTask<V> on an observable to have observable BaseSyncTasks.
+ * A function applied to a task outcome by a task continuation.
  *
- * @param <V> Void or any other object.
+ * @param <T> The argument type.
+ * @param <R> The result type.
  */
-class BaseSyncTaskObservable<V> extends Observable {
+public interface TaskFunction<T, R> {
 
 	/**
-	 * The observable task.
+	 * Applies the function.
+	 * @param value The argument.
+	 * @return The result.
+	 * @throws Exception The continuation fails with this exception.
 	 */
-	private BaseSyncTask<V> task;
+	public R apply(T value) throws Exception;
 	
-	/**
-	 * Builder.
-	 * @param task The observable task.
-	 */
-	public BaseSyncTaskObservable(final BaseSyncTask<V> task) {
-		super();
-		this.task = task;
-	}
-
-	/* (non-Javadoc)
-	 * @see java.util.Observable#setChanged()
-	 */
-	@Override
-	protected void setChanged() {
-		super.setChanged();
-	}
-
-	/**
-	 * Get the task.
-	 * @return The task.
-	 */
-	public BaseSyncTask<V> getTask() {
-		return task;
-	}
-
 }
-
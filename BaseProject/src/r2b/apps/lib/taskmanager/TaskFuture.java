@@ -0,0 +1,342 @@
+/*
+ * TaskFuture
+ * 
+ * 0.3
+ * 
+ * 2026/10/18
+ * 
+ * (The MIT License)
+ * 
+ * Copyright (c) R2B Apps <r2b.apps@gmail.com>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * 'Software'), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED 'AS IS', WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+
+package r2b.apps.lib.taskmanager;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The result handle of a task executed on a TaskManager.
+ * 
+ * Continuations are queued on the same task manager, with the priority of 
+ * the task they depend on, once it is done. No worker waits for them.
+ * A failure or cancellation is propagated along the continuations 
+ * until an exception handler.
+ * 
+ * @param <V> Void or any other object.
+ */
+public final class TaskFuture<V> implements Future<V> {
+	
+	/**
+	 * Body of the futures completed by other ones, never run.
+	 */
+	private static final Runnable NOOP = new Runnable() {
+		@Override
+		public void run() { }
+	};
+
+	/**
+	 * The task manager that runs the continuations.
+	 */
+	private final TaskManager manager;
+	/**
+	 * The wrapped future.
+	 */
+	private final PriorityFutureTask<V> future;
+	
+	/**
+	 * Builder.
+	 * @param manager The task manager that runs the continuations.
+	 * @param future The wrapped future.
+	 */
+	TaskFuture(TaskManager manager, PriorityFutureTask<V> future) {
+		this.manager = manager;
+		this.future = future;
+	}
+	
+	/**
+	 * Applies a function to the result.
+	 * @param function The function.
+	 * @return The function result handle.
+	 */
+	public <R> TaskFuture<R> thenApply(final TaskFunction<? super V, ? extends R> function) {
+		
+		if (function == null) {
+			throw new IllegalArgumentException("function argument is null.");
+		}
+		
+		final PriorityFutureTask<R> next = new PriorityFutureTask<R>(new Callable<R>() {
+			@Override
+			public R call() throws Exception {
+				return function.apply(future.get());
+			}
+		});
+		next.setPriority(future.getPriority());
+		
+		future.addListener(new Runnable() {
+			@Override
+			public void run() {
+				if (future.getFailure() == null) {
+					manager.enqueue(next);
+				}
+				else {
+					next.completeFrom(future);
+				}
+			}
+		});
+		
+		return new TaskFuture<R>(manager, next);
+	}
+	
+	/**
+	 * Applies a function to the result that starts another task.
+	 * @param function The function, returns the handle of the other task.
+	 * @return The other task result handle.
+	 */
+	public <R> TaskFuture<R> thenCompose(final TaskFunction<? super V, TaskFuture<R>> function) {
+		
+		if (function == null) {
+			throw new IllegalArgumentException("function argument is null.");
+		}
+		
+		final PriorityFutureTask<R> promise = promise(future.getPriority());
+		
+		final PriorityFutureTask<Void> next = new PriorityFutureTask<Void>(new Runnable() {
+			@Override
+			public void run() {
+				
+				final TaskFuture<R> other;
+				try {
+					other = function.apply(future.get());
+				} catch (Exception e) {
+					promise.fail(e);
+					return;
+				}
+				
+				if (other == null) {
+					promise.fail(new NullPointerException("The function returned a null task."));
+					return;
+				}
+				
+				other.future.addListener(new Runnable() {
+					@Override
+					public void run() {
+						promise.completeFrom(other.future);
+					}
+				});
+			}
+		}, null);
+		next.setPriority(future.getPriority());
+		
+		future.addListener(new Runnable() {
+			@Override
+			public void run() {
+				if (future.getFailure() == null) {
+					manager.enqueue(next);
+				}
+				else {
+					promise.completeFrom(future);
+				}
+			}
+		});
+		
+		return new TaskFuture<R>(manager, promise);
+	}
+	
+	/**
+	 * Recovers from a failure or cancellation.
+	 * @param function The handler, gets the failure cause and returns the replacement result. 
+	 * A CancellationException if cancelled.
+	 * @return The result handle, with the task result or the handler one.
+	 */
+	public TaskFuture<V> exceptionally(final TaskFunction<Throwable, ? extends V> function) {
+		
+		if (function == null) {
+			throw new IllegalArgumentException("function argument is null.");
+		}
+		
+		final PriorityFutureTask<V> next = new PriorityFutureTask<V>(new Callable<V>() {
+			@Override
+			public V call() throws Exception {
+				return function.apply(future.getFailure());
+			}
+		});
+		next.setPriority(future.getPriority());
+		
+		future.addListener(new Runnable() {
+			@Override
+			public void run() {
+				if (future.getFailure() == null) {
+					next.completeFrom(future);
+				}
+				else {
+					manager.enqueue(next);
+				}
+			}
+		});
+		
+		return new TaskFuture<V>(manager, next);
+	}
+	
+	/**
+	 * Waits for all the tasks. 
+	 * It fails with the first failure or cancellation.
+	 * @param futures The task result handles, at least one.
+	 * @return The result handle, completed when all are.
+	 */
+	public static TaskFuture<Void> allOf(TaskFuture<?>... futures) {
+		
+		checkFutures(futures);
+		
+		final PriorityFutureTask<Void> promise = promise(highestPriority(futures));
+		final AtomicInteger pending = new AtomicInteger(futures.length);
+		
+		for (final TaskFuture<?> each : futures) {
+			each.future.addListener(new Runnable() {
+				@Override
+				public void run() {
+					if (each.future.getFailure() != null) {
+						promise.completeFrom(each.future);
+					}
+					else if (pending.decrementAndGet() == 0) {
+						promise.complete(null);
+					}
+				}
+			});
+		}
+		
+		return new TaskFuture<Void>(futures[0].manager, promise);
+	}
+	
+	/**
+	 * Waits for the first done task.
+	 * @param futures The task result handles, at least one.
+	 * @return The result handle, with the outcome of the first done task.
+	 */
+	public static TaskFuture<Object> anyOf(TaskFuture<?>... futures) {
+		
+		checkFutures(futures);
+		
+		final PriorityFutureTask<Object> promise = promise(highestPriority(futures));
+		
+		for (final TaskFuture<?> each : futures) {
+			each.future.addListener(new Runnable() {
+				@Override
+				public void run() {
+					promise.completeFrom(each.future);
+				}
+			});
+		}
+		
+		return new TaskFuture<Object>(futures[0].manager, promise);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.Future#cancel(boolean)
+	 */
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		return future.cancel(mayInterruptIfRunning);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.Future#isCancelled()
+	 */
+	@Override
+	public boolean isCancelled() {
+		return future.isCancelled();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.Future#isDone()
+	 */
+	@Override
+	public boolean isDone() {
+		return future.isDone();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.Future#get()
+	 */
+	@Override
+	public V get() throws InterruptedException, ExecutionException {
+		return future.get();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.Future#get(long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public V get(long timeout, TimeUnit unit) 
+			throws InterruptedException, ExecutionException, TimeoutException {
+		return future.get(timeout, unit);
+	}
+	
+	/**
+	 * Creates a future completed by other ones.
+	 * @param priority The priority of its continuations.
+	 * @return The future.
+	 */
+	private static <R> PriorityFutureTask<R> promise(int priority) {
+		final PriorityFutureTask<R> promise = new PriorityFutureTask<R>(NOOP, null);
+		promise.setPriority(priority);
+		return promise;
+	}
+	
+	/**
+	 * Check the handles argument.
+	 * @param futures The task result handles.
+	 */
+	private static void checkFutures(TaskFuture<?>[] futures) {
+		
+		if (futures == null || futures.length == 0) {
+			throw new IllegalArgumentException("futures argument is null or empty.");
+		}
+		
+		for (TaskFuture<?> each : futures) {
+			if (each == null) {
+				throw new IllegalArgumentException("futures argument has a null element.");
+			}
+		}
+	}
+	
+	/**
+	 * Get the highest priority, the lowest value.
+	 * @param futures The task result handles.
+	 * @return The priority.
+	 */
+	private static int highestPriority(TaskFuture<?>[] futures) {
+		
+		int priority = Integer.MAX_VALUE;
+		for (TaskFuture<?> each : futures) {
+			priority = Math.min(priority, each.future.getPriority());
+		}
+		
+		return priority;
+	}
+
+}
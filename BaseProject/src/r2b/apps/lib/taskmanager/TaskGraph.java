@@ -0,0 +1,408 @@
+/*
+ * TaskGraph
+ * 
+ * 0.3
+ * 
+ * 2026/10/18
+ * 
+ * (The MIT License)
+ * 
+ * Copyright (c) R2B Apps <r2b.apps@gmail.com>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * 'Software'), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED 'AS IS', WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+
+package r2b.apps.lib.taskmanager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a set of tasks with dependencies (a directed acyclic graph) on a task manager.
+ * 
+ * A task is executed when all its dependencies have completed, so independent 
+ * tasks run concurrently and the graph takes the time of its critical path. 
+ * Each result is passed to the dependent tasks that implement Dependent, 
+ * before they are executed. If a task fails or is cancelled all the tasks that 
+ * depend on it, directly or not, are cancelled. The tasks that do not depend 
+ * on it keep running.
+ * 
+ * A graph runs only once, like its tasks.
+ */
+public final class TaskGraph {
+
+	/**
+	 * Receives the results of the dependencies before the task is executed.
+	 */
+	public interface Dependent {
+		
+		/**
+		 * Notify a dependency result. Calls are sequential, never concurrent.
+		 * @param dependency The completed dependency.
+		 * @param result The dependency result.
+		 */
+		public void onDependencyResult(Task<?> dependency, Object result);
+		
+	}
+	
+	/**
+	 * Notified when the graph finishes.
+	 * 
+	 * WARNING: The notify is made in the thread of the last task, 
+	 * you can not make gui calls on the listener.
+	 */
+	public interface TaskGraphListener {
+		
+		/**
+		 * Notify all the tasks are done: completed, failed or cancelled. 
+		 * Called once, after failed if a task has failed, see hasFailed.
+		 * @param graph The graph.
+		 */
+		public void completed(TaskGraph graph);
+		
+		/**
+		 * Notify the first failed or cancelled task, its dependents are cancelled.
+		 * @param graph The graph.
+		 * @param task The failed task.
+		 * @param cause The failure, a CancellationException if it was cancelled.
+		 */
+		public void failed(TaskGraph graph, Task<?> task, Throwable cause);
+		
+	}
+	
+	/**
+	 * The task manager.
+	 */
+	private final TaskManager manager;
+	/**
+	 * The nodes by task.
+	 */
+	private final Map<Task<?>, Node> nodes = new IdentityHashMap<Task<?>, Node>();
+	/**
+	 * The number of tasks not done.
+	 */
+	private final AtomicInteger remaining = new AtomicInteger();
+	/**
+	 * True once a task has failed.
+	 */
+	private final AtomicBoolean failed = new AtomicBoolean();
+	/**
+	 * True once executed.
+	 */
+	private boolean executed;
+	/**
+	 * The listener, can be null.
+	 */
+	private volatile TaskGraphListener listener;
+	
+	/**
+	 * Builder.
+	 * @param manager The task manager that runs the tasks.
+	 */
+	public TaskGraph(TaskManager manager) {
+		
+		if (manager == null) {
+			throw new IllegalArgumentException("manager argument is null.");
+		}
+		
+		this.manager = manager;
+	}
+	
+	/**
+	 * Adds a task and its dependencies. The dependencies are added to the graph 
+	 * if they are not yet. A task can be added more than one time to add more 
+	 * dependencies.
+	 * @param task The task.
+	 * @param dependencies The tasks that must complete before the task runs.
+	 * @return This graph.
+	 * @throws IllegalStateException if the graph has been executed.
+	 */
+	public synchronized TaskGraph add(Task<?> task, Task<?>... dependencies) {
+		
+		if (task == null) {
+			throw new IllegalArgumentException("task argument is null.");
+		}
+		
+		if (executed) {
+			throw new IllegalStateException("The graph has been executed.");
+		}
+		
+		final Node node = getNode(task);
+		
+		if (dependencies != null) {
+			for (Task<?> dependency : dependencies) {
+				
+				if (dependency == null) {
+					throw new IllegalArgumentException("dependencies argument has a null task.");
+				}
+				
+				if (dependency == task) {
+					throw new IllegalArgumentException("A task can not depend on itself.");
+				}
+				
+				final Node parent = getNode(dependency);
+				if (!parent.dependents.contains(node)) {
+					parent.dependents.add(node);
+					node.pending.incrementAndGet();
+				}
+			}
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * Sets the listener.
+	 * @param listener The listener, null for none.
+	 * @return This graph.
+	 */
+	public TaskGraph setListener(TaskGraphListener listener) {
+		this.listener = listener;
+		return this;
+	}
+	
+	/**
+	 * Executes the tasks without dependencies, the others are executed 
+	 * when their dependencies complete.
+	 * @throws IllegalStateException if the graph has been executed or it has a cycle.
+	 */
+	public void execute() {
+		
+		final List<Node> roots = new ArrayList<Node>();
+		
+		synchronized (this) {
+			
+			if (executed) {
+				throw new IllegalStateException("The graph has been executed.");
+			}
+			
+			checkAcyclic();
+			executed = true;
+			remaining.set(nodes.size());
+			
+			for (final Node node : nodes.values()) {
+				
+				if (node.pending.get() == 0) {
+					roots.add(node);
+				}
+				
+				((PriorityFutureTask<?>) node.task.priorityFutureTask).addListener(new Runnable() {
+					@Override
+					public void run() {
+						onDone(node);
+					}
+				});
+			}
+		}
+		
+		for (Node node : roots) {
+			manager.execute(node.task);
+		}
+	}
+	
+	/**
+	 * Cancels all the tasks of the graph.
+	 * @param mayInterruptIfRunning True if the running tasks should be interrupted.
+	 */
+	public void cancel(boolean mayInterruptIfRunning) {
+		
+		final List<Node> all;
+		synchronized (this) {
+			all = new ArrayList<Node>(nodes.values());
+		}
+		
+		for (Node node : all) {
+			node.task.cancel(mayInterruptIfRunning);
+		}
+	}
+	
+	/**
+	 * Check if a task of the graph has failed or has been cancelled.
+	 * @return True if a task has failed.
+	 */
+	public boolean hasFailed() {
+		return failed.get();
+	}
+	
+	/**
+	 * Get the result of a completed task of the graph.
+	 * @param task The task.
+	 * @return The result, null if it has not completed or it failed.
+	 */
+	@SuppressWarnings("unchecked")
+	public <V> V getResult(Task<V> task) {
+		
+		if (task == null || !task.priorityFutureTask.isDone() || task.priorityFutureTask.isCancelled()) {
+			return null;
+		}
+		
+		try {
+			return task.priorityFutureTask.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Handles the end of a task: passes the result and executes the ready 
+	 * dependents, or cancels them on failure.
+	 * @param node The done node.
+	 */
+	private void onDone(Node node) {
+		
+		Object result = null;
+		Throwable cause = null;
+		
+		if (node.task.priorityFutureTask.isCancelled()) {
+			cause = new CancellationException("Task cancelled.");
+		}
+		else {
+			try {
+				result = node.task.priorityFutureTask.get();
+			} catch (ExecutionException e) {
+				cause = e.getCause();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				cause = e;
+			}
+		}
+		
+		if (cause != null) {
+			
+			if (failed.compareAndSet(false, true) && listener != null) {
+				listener.failed(this, node.task, cause);
+			}
+			
+			// Cancelled dependents are done too, it spreads to all descendants
+			for (Node dependent : node.dependents) {
+				dependent.task.cancel(false);
+			}
+		}
+		else {
+			
+			for (Node dependent : node.dependents) {
+				
+				if (dependent.task instanceof Dependent) {
+					synchronized (dependent) {
+						((Dependent) dependent.task).onDependencyResult(node.task, result);
+					}
+				}
+				
+				// Failures on other branches do not stop this one, 
+				// it is done if it was cancelled by a failed dependency
+				if (dependent.pending.decrementAndGet() == 0 && !dependent.task.priorityFutureTask.isDone()) {
+					manager.execute(dependent.task);
+				}
+			}
+		}
+		
+		if (remaining.decrementAndGet() == 0 && listener != null) {
+			listener.completed(this);
+		}
+	}
+	
+	/**
+	 * Get or create the node of a task.
+	 * @param task The task.
+	 * @return The node.
+	 */
+	private Node getNode(Task<?> task) {
+		Node node = nodes.get(task);
+		if (node == null) {
+			node = new Node(task);
+			nodes.put(task, node);
+		}
+		return node;
+	}
+	
+	/**
+	 * Checks the graph has no cycles (Kahn's algorithm).
+	 * @throws IllegalStateException if there is a cycle.
+	 */
+	private void checkAcyclic() {
+		
+		final Map<Node, Integer> inDegree = new IdentityHashMap<Node, Integer>();
+		final ArrayDeque<Node> ready = new ArrayDeque<Node>();
+		
+		for (Node node : nodes.values()) {
+			inDegree.put(node, Integer.valueOf(node.pending.get()));
+			if (node.pending.get() == 0) {
+				ready.add(node);
+			}
+		}
+		
+		int visited = 0;
+		while (!ready.isEmpty()) {
+			final Node node = ready.poll();
+			visited++;
+			for (Node dependent : node.dependents) {
+				final int degree = inDegree.get(dependent).intValue() - 1;
+				inDegree.put(dependent, Integer.valueOf(degree));
+				if (degree == 0) {
+					ready.add(dependent);
+				}
+			}
+		}
+		
+		if (visited != nodes.size()) {
+			throw new IllegalStateException("The graph has a cycle.");
+		}
+	}
+	
+	/**
+	 * A task of the graph.
+	 */
+	private static final class Node {
+		
+		/**
+		 * The task.
+		 */
+		final Task<?> task;
+		/**
+		 * The tasks that depend on this one.
+		 */
+		final List<Node> dependents = new ArrayList<Node>(2);
+		/**
+		 * The number of dependencies not completed.
+		 */
+		final AtomicInteger pending = new AtomicInteger();
+		
+		/**
+		 * Builder.
+		 * @param task The task.
+		 */
+		Node(Task<?> task) {
+			this.task = task;
+		}
+		
+	}
+	
+}
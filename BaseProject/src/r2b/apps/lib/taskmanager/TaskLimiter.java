@@ -0,0 +1,242 @@
+/*
+ * TaskLimiter
+ * 
+ * 0.3
+ * 
+ * 2026/10/18
+ * 
+ * (The MIT License)
+ * 
+ * Copyright (c) R2B Apps <r2b.apps@gmail.com>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * 'Software'), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED 'AS IS', WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+
+package r2b.apps.lib.taskmanager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * Limits the tasks of one kind, the ones with the same tag or class: 
+ * how many run at the same time and how many start per period.
+ * 
+ * A task over the limits is parked here by priority, it does not take a 
+ * worker. It is handed to the pool when a running one completes or, with 
+ * a rate limit, when the scheduler thread wakes up at the next free permit.
+ * 
+ * The rate limit is a token bucket: up to the permits of the period start 
+ * at once, then one each period / permits.
+ */
+final class TaskLimiter {
+
+	/**
+	 * The max number of running tasks, zero for no limit.
+	 */
+	private final int maxConcurrent;
+	/**
+	 * Nanoseconds between two permits, zero for no rate limit.
+	 */
+	private final long interval;
+	/**
+	 * Nanoseconds of permits the bucket holds.
+	 */
+	private final long burst;
+	/**
+	 * Wakes up the parked tasks when a permit is free.
+	 */
+	private final TaskScheduler scheduler;
+	/**
+	 * Runs the admitted tasks.
+	 */
+	private final Executor target;
+	/**
+	 * The parked tasks by priority.
+	 */
+	private final PriorityQueue<Runnable> parked;
+	/**
+	 * The number of admitted tasks not done.
+	 */
+	private int running;
+	/**
+	 * The System.nanoTime() when the bucket is full again.
+	 */
+	private long full;
+	/**
+	 * The scheduled wake up, null if none.
+	 */
+	private TaskScheduler.Entry wakeUp;
+	
+	/**
+	 * Releases a running permit when an admitted task run ends.
+	 */
+	private final Runnable release = new Runnable() {
+		@Override
+		public void run() {
+			synchronized (TaskLimiter.this) {
+				running--;
+			}
+			dispatch();
+		}
+	};
+	
+	/**
+	 * Wakes up the parked tasks.
+	 */
+	private final Runnable wake = new Runnable() {
+		@Override
+		public void run() {
+			synchronized (TaskLimiter.this) {
+				wakeUp = null;
+			}
+			dispatch();
+		}
+	};
+	
+	/**
+	 * Builder.
+	 * @param maxConcurrent The max number of running tasks, zero for no limit.
+	 * @param permits The number of task starts per period, zero for no rate limit.
+	 * @param period The rate limit period in nanoseconds.
+	 * @param comparator The parked tasks order.
+	 * @param scheduler Wakes up the parked tasks.
+	 * @param target Runs the admitted tasks.
+	 */
+	TaskLimiter(int maxConcurrent, int permits, long period, 
+			Comparator<Runnable> comparator, TaskScheduler scheduler, Executor target) {
+		this.maxConcurrent = maxConcurrent;
+		this.interval = permits > 0 ? Math.max(1L, period / permits) : 0L;
+		this.burst = interval * permits;
+		this.scheduler = scheduler;
+		this.target = target;
+		this.parked = new PriorityQueue<Runnable>(11, comparator);
+		this.full = System.nanoTime();
+	}
+	
+	/**
+	 * Runs the task now if it is under the limits, or parks it.
+	 * @param future The queued future task.
+	 */
+	void execute(PriorityFutureTask<?> future) {
+		
+		synchronized (this) {
+			parked.add(future);
+		}
+		
+		dispatch();
+	}
+	
+	/**
+	 * Get the number of parked tasks.
+	 * @return The parked tasks.
+	 */
+	synchronized int getParkedCount() {
+		return parked.size();
+	}
+	
+	/**
+	 * Removes the parked tasks, on shutdown.
+	 * @return The parked future tasks.
+	 */
+	List<Runnable> drain() {
+		
+		final List<Runnable> drained;
+		
+		synchronized (this) {
+			drained = new ArrayList<Runnable>(parked);
+			parked.clear();
+			if (wakeUp != null) {
+				wakeUp.cancel();
+				wakeUp = null;
+			}
+		}
+		
+		return drained;
+	}
+	
+	/**
+	 * Hands the parked tasks under the limits to the pool, by priority.
+	 */
+	private void dispatch() {
+		
+		List<PriorityFutureTask<?>> admitted = null;
+		
+		synchronized (this) {
+			
+			final long now = System.nanoTime();
+			
+			while (!parked.isEmpty()) {
+				
+				final PriorityFutureTask<?> head = (PriorityFutureTask<?>) parked.peek();
+				
+				// Cancelled while parked
+				if (head.isDone()) {
+					parked.poll();
+					continue;
+				}
+				
+				if (maxConcurrent > 0 && running >= maxConcurrent) {
+					break;
+				}
+				
+				if (interval > 0) {
+					// Takes one permit, or waits until there is one
+					final long next = Math.max(full, now) + interval;
+					final long wait = next - burst - now;
+					if (wait > 0) {
+						if (wakeUp == null) {
+							wakeUp = scheduler.scheduleAt(wake, now + wait);
+						}
+						break;
+					}
+					full = next;
+				}
+				
+				parked.poll();
+				
+				if (maxConcurrent > 0) {
+					running++;
+				}
+				
+				if (admitted == null) {
+					admitted = new ArrayList<PriorityFutureTask<?>>();
+				}
+				admitted.add(head);
+			}
+		}
+		
+		if (admitted == null) {
+			return;
+		}
+		
+		for (PriorityFutureTask<?> future : admitted) {
+			if (maxConcurrent > 0) {
+				// Per run, a periodic task is admitted again for each one
+				future.addRunListener(release);
+			}
+			target.execute(future);
+		}
+	}
+	
+}
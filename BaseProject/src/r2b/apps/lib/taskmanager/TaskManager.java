@@ -32,17 +32,97 @@
 
 package r2b.apps.lib.taskmanager;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+import r2b.apps.utils.logger.Logger;
+
 /**
  * Manages all concerned of threads, queues, priorities; on task executions.
  */
 public final class TaskManager {
 
+	/**
+	 * The engine that queues and runs the tasks.
+	 */
+	public static enum ENGINE {
+		/**
+		 * A fixed thread pool over one shared priority queue.
+		 */
+		PRIORITY_QUEUE, 
+		/**
+		 * A fixed thread pool with one priority queue per worker, idle workers 
+		 * steal tasks from the busy ones. Less lock contention with a lot of 
+		 * short tasks.
+		 */
+		WORK_STEALING
+	};
+	
+	/**
+	 * What to do with a new task when the bounded queue is full.
+	 */
+	public static enum OVERFLOW_POLICY {
+		/**
+		 * The caller waits until there is space on the queue. 
+		 * A task submitted from a worker of the pool, e.g. a TaskGraph dependent 
+		 * or a TaskFuture continuation, is rejected instead: the workers drain 
+		 * the queue, so if all of them waited for space the pool would deadlock.
+		 */
+		BLOCK, 
+		/**
+		 * The new task is rejected.
+		 */
+		REJECT, 
+		/**
+		 * The lowest priority task is rejected, it can be the new one.
+		 */
+		DROP_LOWEST_PRIORITY, 
+		/**
+		 * The new task replaces a queued task of the same class and identifier, 
+		 * the replaced task gets the result of the new one. 
+		 * The new task is rejected if there is none, or if its identifier is zero.
+		 */
+		COALESCE
+	};
+	
+	/**
+	 * The default lane, for CPU-bound tasks and tasks without lane.
+	 */
+	public static final String LANE_CPU = "cpu";
+	/**
+	 * The lane for blocking I/O tasks: database, network, files.
+	 */
+	public static final String LANE_IO = "io";
+	
 	/**
 	 * The number of threads to keep in the pool, even if they are idle.
 	 * By default the available processors multiplied by two.
@@ -61,18 +141,76 @@ public final class TaskManager {
 	 * Time to wait until all threads are finish when shutdown executor.
 	 */
 	private static final long AWAIT_TERMINATION_TIME = 500L;
+	/**
+	 * Maximum number of tasks a worker runs per batch on executeAll.
+	 */
+	private static final int MAX_BATCH_SIZE = 32;
+	/**
+	 * By default, one of each this number of task runs is logged.
+	 */
+	private static final int DEFAULT_TRACE_SAMPLING = 100;
+	/**
+	 * Format version of the persisted tasks file.
+	 */
+	private static final int PERSISTENCE_VERSION = 1;
+	/**
+	 * The number of threads of the I/O lane by default.
+	 */
+	private static final int DEFAULT_IO_POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors());
 	
 	/**
 	 * Manage termination and tracking progress of one or more tasks.
 	 */
 	private ExecutorService executor;
+	/**
+	 * The number of threads, the initial one with adaptive pool size.
+	 */
+	private int threadPoolSize;
+	/**
+	 * Notified on rejected tasks, can be null.
+	 */
+	private RejectedTaskListener rejectedTaskListener;
+	/**
+	 * Runtime metrics.
+	 */
+	private final TaskMetrics metrics = new TaskMetrics();
+	/**
+	 * The lanes by name, but the default one.
+	 */
+	private Map<String, TaskLane> lanes;
+	/**
+	 * The limiters by task tag or class name.
+	 */
+	private Map<String, TaskLimiter> limiters;
+	/**
+	 * Hands the tasks admitted by the limiters to the pool.
+	 */
+	private final Executor admitted = new Executor() {
+		@Override
+		public void execute(Runnable command) {
+			submit((PriorityFutureTask<?>) command);
+		}
+	};
+	/**
+	 * Queued or running tasks by class and identifier, null if coalescing is disabled.
+	 */
+	private ConcurrentHashMap<CoalescingKey, Task<?>> inFlightTasks;
+	/**
+	 * Feeds the pool with delayed and periodic tasks.
+	 */
+	private final TaskScheduler scheduler = new TaskScheduler("TaskManager-scheduler");
+	/**
+	 * Interrupts the tasks that exceed their timeout, it lives until 
+	 * the running tasks end, after the scheduler, on shutdown.
+	 */
+	private final TaskScheduler watchdog = new TaskScheduler("TaskManager-watchdog");
 	
 	/**
 	 * Builder. 
      * Initializes the thread pool with the DEFAULT_CORE_POOL_SIZE.
 	 */
     public TaskManager() {
-    	init(DEFAULT_CORE_POOL_SIZE);
+    	this(new Builder());
     }
     
 	/**
@@ -82,89 +220,1669 @@ public final class TaskManager {
      * DEFAULT_CORE_POOL_SIZE will be set for negative values.
 	 */
     public TaskManager(int threadPoolSize) {
-    	if(threadPoolSize > 0) {
-    		init(threadPoolSize);    		
-    	}
-    	else {
-    		init(DEFAULT_CORE_POOL_SIZE);
-    	}
-    	
+    	this(new Builder().setThreadPoolSize(threadPoolSize));
+    }
+    
+	/**
+	 * Builder.
+     * Initializes the task manager with the builder configuration.
+     * @param builder The configuration.
+	 */
+    private TaskManager(Builder builder) {
+    	init(builder);
     }
     
     /**
-     * Initializes the thread pool with the argument size. The treads are reusing. 
+     * Initializes the thread pool with the builder configuration. The treads are reusing. 
      * Call this method more than one time resets previous pool. 
-     * @param threadPoolSize The number of threads to keep in the pool, even if they are idle. 
+     * @param builder The configuration.
      */
-    private void init(int threadPoolSize) {
+    private void init(Builder builder) {
+    	
+    	threadPoolSize = builder.threadPoolSize;
+    	rejectedTaskListener = builder.rejectedTaskListener;
+    	inFlightTasks = builder.coalescing ? new ConcurrentHashMap<CoalescingKey, Task<?>>() : null;
+    	metrics.setTraceSampling(builder.traceSampling);
+    	
+    	final PriorityFutureTaskComparator comparator = 
+    			new PriorityFutureTaskComparator(builder.agingTime, TimeUnit.NANOSECONDS);
+    	
+    	// A fixed thread pool per lane, the idle threads time out
+    	lanes = new HashMap<String, TaskLane>();
+    	for (Map.Entry<String, Integer> lane : builder.lanes.entrySet()) {
+    		
+    		final ThreadPoolExecutor threadPool = 
+    				new ThreadPoolExecutor(
+    						lane.getValue(), 
+    						lane.getValue(), 
+    						KEEP_ALIVE, 
+    						TimeUnit.SECONDS, 
+    						new PriorityBlockingQueue<Runnable>(INITIAL_QUEUE_CAPACITY, comparator));
+    		threadPool.allowCoreThreadTimeOut(true);
+    		
+    		final TaskMetrics laneMetrics = new TaskMetrics();
+    		laneMetrics.setTraceSampling(builder.traceSampling);
+    		
+    		lanes.put(lane.getKey(), new TaskLane(threadPool, laneMetrics));
+    	}
+    	
+    	limiters = new HashMap<String, TaskLimiter>();
+    	for (Map.Entry<String, Builder.Limit> limit : builder.limits.entrySet()) {
+    		limiters.put(limit.getKey(), new TaskLimiter(
+    				limit.getValue().maxConcurrent, 
+    				limit.getValue().permits, 
+    				limit.getValue().period, 
+    				comparator, 
+    				scheduler, 
+    				admitted));
+    	}
+    	
+    	if (builder.engine == ENGINE.WORK_STEALING) {
+    		// One priority queue per worker
+    		executor = new WorkStealingExecutor(builder.threadPoolSize, comparator);
+    		return;
+    	}
+		
+    	if (builder.queueCapacity > 0) {
+    		
+    		// A bounded queue, the overflow handler applies the policy when it is full
+    		final BoundedPriorityBlockingQueue boundedQueue = 
+    				new BoundedPriorityBlockingQueue(builder.queueCapacity, comparator);
+    		
+    		final ThreadPoolExecutor threadPool = newThreadPool(builder, boundedQueue);
+    		final OverflowHandler overflowHandler = new OverflowHandler(builder.overflowPolicy, boundedQueue);
+    		threadPool.setRejectedExecutionHandler(overflowHandler);
+    		// Marks the workers, they must not wait for the queue they drain
+    		threadPool.setThreadFactory(overflowHandler.newThreadFactory(threadPool.getThreadFactory()));
+    		executor = threadPool;
+    		return;
+    	}
 		
 		// An unbounded queue
 		final BlockingQueue<Runnable> taskPriorityBlockingQueue = 
-				new PriorityBlockingQueue<Runnable>(INITIAL_QUEUE_CAPACITY, new PriorityFutureTaskComparator());
+				new PriorityBlockingQueue<Runnable>(INITIAL_QUEUE_CAPACITY, comparator);
     	
-    	// Create and init the executor with a fixed thread pool and an unbounded priority blocking queue
-		executor = 
-				new ThreadPoolExecutor(
-						threadPoolSize, 
-						threadPoolSize, 
-						KEEP_ALIVE, 
-						TimeUnit.SECONDS, 
-						taskPriorityBlockingQueue);
+    	// Create and init the executor with a thread pool and an unbounded priority blocking queue
+		executor = newThreadPool(builder, taskPriorityBlockingQueue);
 
     }  
     
+    /**
+     * Creates the thread pool, fixed or adaptive.
+     * @param builder The configuration.
+     * @param queue The task queue.
+     * @return The thread pool.
+     */
+    private ThreadPoolExecutor newThreadPool(Builder builder, BlockingQueue<Runnable> queue) {
+    	
+    	if (builder.maxPoolSize > 0) {
+    		final ThreadPoolExecutor threadPool = 
+    				new AdaptiveThreadPoolExecutor(
+    						builder.minPoolSize, 
+    						builder.maxPoolSize, 
+    						KEEP_ALIVE, 
+    						TimeUnit.SECONDS, 
+    						queue, 
+    						metrics, 
+    						scheduler);
+    		threadPoolSize = threadPool.getCorePoolSize();
+    		return threadPool;
+    	}
+    	
+    	return new ThreadPoolExecutor(
+    			builder.threadPoolSize, 
+    			builder.threadPoolSize, 
+    			KEEP_ALIVE, 
+    			TimeUnit.SECONDS, 
+    			queue);
+    }
+    
+    /**
+     * Check if the manager is shutdown.
+     * @return True if shutdown.
+     */
+    boolean isShutdown() {
+    	return executor.isShutdown();
+    }
+    
+    /**
+     * Get the current number of threads.
+     * @return The pool size, it changes with adaptive pool size.
+     */
+    private int getPoolSize() {
+    	
+    	if (executor instanceof AdaptiveThreadPoolExecutor) {
+    		return ((ThreadPoolExecutor) executor).getCorePoolSize();
+    	}
+    	
+    	return threadPoolSize;
+    }
+    
 	/**
 	 * Executes a task.
+	 * With a bounded queue the call can block or reject the task, see OVERFLOW_POLICY.
+	 * With coalescing, a task with the same class and identifier as a queued or 
+	 * running one is not run, it completes with the result of the other one.
+	 * @param task The task to execute. If the task manager is shutdown the task is cancelled.
+	 * @return The task result handle to compose continuations, null if the task is null.
+	 */
+	public <V> TaskFuture<V> execute(Task<V> task) {
+		
+		if (task == null) {
+			return null;
+		}
+		
+		final PriorityFutureTask<V> future = (PriorityFutureTask<V>) task.priorityFutureTask;
+		
+		if (executor.isShutdown()) {
+			future.cancel(false);
+		}
+		else if (inFlightTasks == null || !coalesce(task)) {
+			enqueue(future);
+		}
+		
+		return new TaskFuture<V>(this, future);
+	}
+	
+	/**
+	 * Executes a collection of tasks.
+	 * The tasks are grouped by priority in batches, each batch is queued in one 
+	 * operation and a worker runs all its tasks in one wake up. Useful for a lot 
+	 * of small tasks. The batches are sized to keep all the workers busy.
+	 * With a bounded queue each batch uses one queue position.
+	 * @param tasks The tasks to execute. Null tasks are ignored. Do nothing if is null. 
+	 * If the task manager is shutdown the tasks are cancelled.
+	 */
+	public void executeAll(Collection<? extends Task<?>> tasks) {
+		
+		if (tasks == null) {
+			return;
+		}
+		
+		if (executor.isShutdown()) {
+			// As execute, so their listeners and futures complete
+			for (Task<?> task : tasks) {
+				if (task != null) {
+					task.priorityFutureTask.cancel(false);
+				}
+			}
+			return;
+		}
+		
+		final List<PriorityFutureTask<?>> futures = new ArrayList<PriorityFutureTask<?>>(tasks.size());
+		for (Task<?> task : tasks) {
+			if (task != null && (inFlightTasks == null || !coalesce(task))) {
+				futures.add((PriorityFutureTask<?>) task.priorityFutureTask);
+			}
+		}
+		
+		enqueueAll(futures);
+	}
+	
+	/**
+	 * Queues a future task.
+	 * @param future The future task.
+	 */
+	void enqueue(PriorityFutureTask<?> future) {
+		
+		if (prepare(future)) {
+			future.enqueued();
+			admit(future);
+		}
+	}
+	
+	/**
+	 * Hands a queued future task to its limiter, or to the executor if it has none.
+	 * @param future The future task.
+	 */
+	private void admit(PriorityFutureTask<?> future) {
+		
+		final TaskLimiter limiter = limiterOf(future);
+		
+		if (limiter == null) {
+			submit(future);
+		}
+		else {
+			limiter.execute(future);
+		}
+	}
+	
+	/**
+	 * Get the limiter of a future task, by tag first and then by class name.
+	 * @param future The future task.
+	 * @return The limiter, null if it has no limits.
+	 */
+	private TaskLimiter limiterOf(PriorityFutureTask<?> future) {
+		
+		if (limiters.isEmpty() || future.getTask() == null) {
+			return null;
+		}
+		
+		final Task<?> task = future.getTask();
+		final TaskLimiter limiter = task.getTag() != null ? limiters.get(task.getTag()) : null;
+		
+		return limiter != null ? limiter : limiters.get(task.getClass().getName());
+	}
+	
+	/**
+	 * Hands a queued future task to the executor, rejecting it if the executor is shutdown.
+	 * @param future The future task.
+	 */
+	private void submit(PriorityFutureTask<?> future) {
+		
+		final TaskLane lane = laneOf(future);
+		
+		try {
+			(lane == null ? executor : lane.executor).execute(future);
+		} catch (RejectedExecutionException e) {
+			reject(future);
+		}
+	}
+	
+	/**
+	 * Get the lane of a future task.
+	 * @param future The future task.
+	 * @return The lane, null for the default one.
+	 */
+	private TaskLane laneOf(Runnable future) {
+		
+		if (lanes.isEmpty() || !(future instanceof PriorityFutureTask<?>)) {
+			return null;
+		}
+		
+		final Task<?> task = ((PriorityFutureTask<?>) future).getTask();
+		
+		return task == null || task.getLane() == null ? null : lanes.get(task.getLane());
+	}
+	
+	/**
+	 * Get the metrics of a future task lane.
+	 * @param future The future task.
+	 * @return The metrics.
+	 */
+	private TaskMetrics metricsOf(Runnable future) {
+		final TaskLane lane = laneOf(future);
+		return lane == null ? metrics : lane.metrics;
+	}
+	
+	/**
+	 * Prepares the metrics, deadline and timeout of a future task before queuing it.
+	 * @param future The future task.
+	 * @return True if it must be queued, false if its deadline has already passed.
+	 */
+	private boolean prepare(PriorityFutureTask<?> future) {
+		
+		final TaskMetrics metrics = metricsOf(future);
+		
+		future.setMetrics(metrics);
+		metrics.submitted();
+		
+		if (future.getDeadline() == 0 && future.getTimeout() == 0) {
+			return true;
+		}
+		
+		future.setWatchdog(watchdog);
+		
+		if (future.isDeadlineExpired()) {
+			if (future.expire()) {
+				metrics.expired();
+			}
+			return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Queues future tasks in batches of the same priority. 
+	 * The tasks of the other lanes and the limited ones are queued one by one.
+	 * @param all The future tasks.
+	 */
+	void enqueueAll(List<PriorityFutureTask<?>> all) {
+		
+		final List<PriorityFutureTask<?>> futures = new ArrayList<PriorityFutureTask<?>>(all.size());
+		
+		for (PriorityFutureTask<?> future : all) {
+			
+			// Drops the expired ones
+			if (!prepare(future)) {
+				continue;
+			}
+			
+			// Keeps the submission order inside each priority
+			future.enqueued();
+			
+			if (laneOf(future) == null && limiterOf(future) == null) {
+				futures.add(future);
+			}
+			else {
+				admit(future);
+			}
+		}
+		
+		if (futures.isEmpty()) {
+			return;
+		}
+		Collections.sort(futures, BY_PRIORITY);
+		
+		final int size = futures.size();
+		int from = 0;
+		while (from < size) {
+			
+			final int priority = futures.get(from).getPriority();
+			int to = from + 1;
+			while (to < size && futures.get(to).getPriority() == priority) {
+				to++;
+			}
+			
+			// Spread the priority group among all the workers
+			final int poolSize = getPoolSize();
+			final int batchSize = Math.max(1, Math.min(MAX_BATCH_SIZE, (to - from + poolSize - 1) / poolSize));
+			
+			for (int i = from; i < to; i += batchSize) {
+				
+				final int end = Math.min(to, i + batchSize);
+				final PriorityFutureTask<?> entry;
+				if (end - i == 1) {
+					entry = futures.get(i);
+				}
+				else {
+					entry = new TaskBatch(futures.subList(i, end));
+					entry.enqueued();
+				}
+				
+				submit(entry);
+			}
+			
+			from = to;
+		}
+	}
+	
+	/**
+	 * Executes a task after a delay.
+	 * Cancel the task to discard it.
 	 * @param task The task to execute. Do nothing if is null or task manager is shutdown.
+	 * @param delay The time from now to execute the task.
+	 * @param unit The delay unit.
 	 */
-	public void execute(Task<?> task) {
+	public void schedule(final Task<?> task, long delay, TimeUnit unit) {
+		
+		if (unit == null) {
+			throw new IllegalArgumentException("unit argument is null.");
+		}
 		
 		if (task != null && !executor.isShutdown()) {
-			executor.execute(task.priorityFutureTask);
+			scheduler.schedule(new Runnable() {
+				@Override
+				public void run() {
+					if (!task.priorityFutureTask.isDone()) {
+						execute(task);
+					}
+				}
+			}, delay, unit);
 		}
-			
 	}
 	
 	/**
-	 * Shutdown the manager, call this method invalidates task completion listeners/observers.
-	 * Invocation has no additional effect if already shut down.
+	 * Executes a task periodically, first after the initial delay and then each period. 
+	 * If a run takes longer than the period the next one starts late, runs never overlap.
+	 * Cancel the task to stop it, it also stops if a run fails.
 	 * 
-	 * @param mayInterruptIfRunning True attempts to stop all actively executing tasks, 
-	 * halts the processing of waiting tasks, this does not wait for actively executing 
-	 * tasks to terminate. False initiates an orderly shutdown in which previously 
-	 * submitted tasks are executed.
+	 * WARNING: A successful run does not complete the task, so its TaskFuture 
+	 * continuations are only run when a run fails or the task is cancelled. 
+	 * A BaseSyncTask is rejected, its observers would never get a result.
+	 * 
+	 * @param task The task to execute. Do nothing if is null or task manager is shutdown.
+	 * @param initialDelay The time from now to the first run.
+	 * @param period The time between the start of two runs.
+	 * @param unit The time unit.
+	 * @throws IllegalArgumentException If the task is a BaseSyncTask.
 	 */
-	public void shutdown(boolean mayInterruptIfRunning) {
+	public void scheduleAtFixedRate(Task<?> task, long initialDelay, long period, TimeUnit unit) {
+		schedulePeriodic(task, initialDelay, period, unit, true);
+	}
+	
+	/**
+	 * Executes a task periodically, first after the initial delay and then with the 
+	 * delay between the end of a run and the start of the next one.
+	 * Cancel the task to stop it, it also stops if a run fails.
+	 * 
+	 * WARNING: A successful run does not complete the task, so its TaskFuture 
+	 * continuations are only run when a run fails or the task is cancelled. 
+	 * A BaseSyncTask is rejected, its observers would never get a result.
+	 * 
+	 * @param task The task to execute. Do nothing if is null or task manager is shutdown.
+	 * @param initialDelay The time from now to the first run.
+	 * @param delay The time between the end of a run and the start of the next one.
+	 * @param unit The time unit.
+	 * @throws IllegalArgumentException If the task is a BaseSyncTask.
+	 */
+	public void scheduleWithFixedDelay(Task<?> task, long initialDelay, long delay, TimeUnit unit) {
+		schedulePeriodic(task, initialDelay, delay, unit, false);
+	}
+	
+	/**
+	 * Schedules a periodic task.
+	 * @param task The task.
+	 * @param initialDelay The time from now to the first run.
+	 * @param period The period or delay.
+	 * @param unit The time unit.
+	 * @param fixedRate True for fixed rate, false for fixed delay.
+	 */
+	private void schedulePeriodic(Task<?> task, long initialDelay, long period, TimeUnit unit, boolean fixedRate) {
 		
-		if(!executor.isShutdown()) {
+		if (unit == null) {
+			throw new IllegalArgumentException("unit argument is null.");
+		}
+		
+		if (period <= 0) {
+			throw new IllegalArgumentException("period argument is not positive.");
+		}
+		
+		if (task instanceof BaseSyncTask) {
+			throw new IllegalArgumentException("task is a BaseSyncTask, a periodic task has no result: " + task.getClass().getName());
+		}
+		
+		if (task != null && !executor.isShutdown()) {
+			final long first = System.nanoTime() + unit.toNanos(Math.max(0L, initialDelay));
+			scheduler.scheduleAt(
+					new PeriodicAction((PriorityFutureTask<?>) task.priorityFutureTask, first, unit.toNanos(period), fixedRate), 
+					first);
+		}
+	}
+	
+	/**
+	 * Attaches the task to a queued or running one with the same class and 
+	 * identifier, or registers it as the running one for them. 
+	 * The default identifier, zero, is never coalesced.
+	 * @param task The task.
+	 * @return True if attached, it must not run. False if it must run.
+	 */
+	private boolean coalesce(final Task<?> task) {
+		
+		if (task.getId() == 0) {
+			return false;
+		}
+		
+		final CoalescingKey key = new CoalescingKey(task);
+		
+		for (;;) {
 			
-			if(mayInterruptIfRunning) {
-				executor.shutdownNow();
+			final Task<?> primary = inFlightTasks.putIfAbsent(key, task);
+			
+			if (primary == null) {
+				// First one, unregister when done
+				((PriorityFutureTask<?>) task.priorityFutureTask).addListener(new Runnable() {
+					@Override
+					public void run() {
+						inFlightTasks.remove(key, task);
+					}
+				});
+				return false;
 			}
-			else {
-				executor.shutdown();
+			
+			if (primary == task) {
+				// Already submitted
+				return true;
 			}
-						
-		    try {
-		    	// Wait until all threads are finish
-				executor.awaitTermination(AWAIT_TERMINATION_TIME, TimeUnit.MILLISECONDS);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
+			
+			if (!primary.priorityFutureTask.isDone()) {
+				attach(task, primary);
+				return true;
 			}
-
+			
+			// Done but not unregistered yet
+			inFlightTasks.remove(key, primary);
 		}
+	}
+	
+	/**
+	 * Completes the follower with the primary task result when it is done, 
+	 * the follower listeners get the shared result.
+	 * @param follower The coalesced task.
+	 * @param primary The running task.
+	 */
+	private void attach(final Task<?> follower, final Task<?> primary) {
 		
+		((PriorityFutureTask<?>) primary.priorityFutureTask).addListener(new Runnable() {
+			@Override
+			public void run() {
+				((PriorityFutureTask<?>) follower.priorityFutureTask).completeFrom(primary.priorityFutureTask);
+			}
+		});
 	}
 	
-	/* (non-Javadoc)
-	 * @see java.lang.Object#finalize()
+	/**
+	 * Get the number of tasks waiting to run.
+	 * @return The queue depth.
 	 */
-	@Override
-	protected void finalize() throws Throwable {
-		if (executor != null && !executor.isShutdown()) {
-			executor.shutdownNow();
+	public int getQueueSize() {
+		
+		int size = 0;
+		for (TaskLane lane : lanes.values()) {
+			size += lane.executor.getQueue().size();
 		}
-		super.finalize();
+		
+		return size + getDefaultQueueSize();
 	}
-    
+	
+	/**
+	 * Get the number of tasks waiting to run on the default lane.
+	 * @return The queue depth.
+	 */
+	private int getDefaultQueueSize() {
+		
+		if (executor instanceof WorkStealingExecutor) {
+			return ((WorkStealingExecutor) executor).getQueueSize();
+		}
+		
+		return ((ThreadPoolExecutor) executor).getQueue().size();
+	}
+	
+	/**
+	 * Takes a snapshot of the runtime metrics of all the lanes: queue depth, 
+	 * worker utilisation, counters, and wait and run time histograms per 
+	 * priority and task class.
+	 * @return The metrics snapshot.
+	 */
+	public TaskMetrics.Snapshot getMetrics() {
+		
+		final TaskMetrics.Snapshot defaultLane = metrics.snapshot(getPoolSize(), getDefaultQueueSize());
+		
+		if (lanes.isEmpty()) {
+			return defaultLane;
+		}
+		
+		final TaskMetrics.Snapshot[] parts = new TaskMetrics.Snapshot[lanes.size() + 1];
+		int i = 0;
+		parts[i++] = defaultLane;
+		for (String name : lanes.keySet()) {
+			parts[i++] = getMetrics(name);
+		}
+		
+		return new TaskMetrics.Snapshot(parts);
+	}
+	
+	/**
+	 * Takes a snapshot of the runtime metrics of a lane.
+	 * @param lane The lane name, LANE_CPU for the default one.
+	 * @return The metrics snapshot, null if there is no such lane.
+	 */
+	public TaskMetrics.Snapshot getMetrics(String lane) {
+		
+		if (LANE_CPU.equals(lane)) {
+			return metrics.snapshot(getPoolSize(), getDefaultQueueSize());
+		}
+		
+		final TaskLane taskLane = lanes.get(lane);
+		if (taskLane == null) {
+			return null;
+		}
+		
+		return taskLane.metrics.snapshot(taskLane.executor.getCorePoolSize(), taskLane.executor.getQueue().size());
+	}
+	
+	/**
+	 * Get the lane names.
+	 * @return The names, LANE_CPU included.
+	 */
+	public Set<String> getLanes() {
+		
+		final Set<String> names = new HashSet<String>(lanes.keySet());
+		names.add(LANE_CPU);
+		
+		return names;
+	}
+
+	/**
+	 * Get the number of tasks parked by their concurrency or rate limits, 
+	 * they are not on the queue size.
+	 * @return The throttled tasks.
+	 */
+	public int getThrottledTaskCount() {
+		
+		int count = 0;
+		for (TaskLimiter limiter : limiters.values()) {
+			count += limiter.getParkedCount();
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Get the number of tasks rejected since the manager was built, 
+	 * by the overflow policy or because it is shutdown.
+	 * @return The rejected tasks.
+	 */
+	public long getRejectedTaskCount() {
+		
+		long count = metrics.getRejectedCount();
+		for (TaskLane lane : lanes.values()) {
+			count += lane.metrics.getRejectedCount();
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Get the number of tasks not run because their deadline passed before start.
+	 * @return The expired tasks.
+	 */
+	public long getExpiredTaskCount() {
+		
+		long count = metrics.getExpiredCount();
+		for (TaskLane lane : lanes.values()) {
+			count += lane.metrics.getExpiredCount();
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Get the number of tasks interrupted because they exceeded their timeout.
+	 * @return The timed out tasks.
+	 */
+	public long getTimedOutTaskCount() {
+		
+		long count = metrics.getTimedOutCount();
+		for (TaskLane lane : lanes.values()) {
+			count += lane.metrics.getTimedOutCount();
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Rejects a task: cancels it and notifies the listener.
+	 * @param runnable The rejected future task.
+	 */
+	private void reject(Runnable runnable) {
+		
+		if (runnable instanceof TaskBatch) {
+			// Rejects all the batched tasks
+			((TaskBatch) runnable).cancel(false);
+			for (PriorityFutureTask<?> future : ((TaskBatch) runnable).getTasks()) {
+				reject(future);
+			}
+			return;
+		}
+		
+		metricsOf(runnable).rejected();
+		
+		if (runnable instanceof PriorityFutureTask<?>) {
+			
+			final PriorityFutureTask<?> future = (PriorityFutureTask<?>) runnable;
+			future.cancel(false);
+			
+			if (rejectedTaskListener != null && future.getTask() != null) {
+				rejectedTaskListener.onTaskRejected(future.getTask());
+			}
+		}
+	}
+	
+	/**
+	 * Shutdown the manager, call this method invalidates task completion listeners/observers.
+	 * Invocation has no additional effect if already shut down.
+	 * 
+	 * @param mayInterruptIfRunning True attempts to stop all actively executing tasks, 
+	 * halts the processing of waiting tasks, this does not wait for actively executing 
+	 * tasks to terminate. False initiates an orderly shutdown in which previously 
+	 * submitted tasks are executed, but the ones throttled by their limits are cancelled.
+	 */
+	public void shutdown(boolean mayInterruptIfRunning) {
+		
+		if(!executor.isShutdown()) {
+			
+			// Discards delayed and periodic tasks
+			scheduler.shutdown();
+			
+			// Discards throttled tasks
+			for (TaskLimiter limiter : limiters.values()) {
+				for (Runnable future : limiter.drain()) {
+					((PriorityFutureTask<?>) future).cancel(false);
+				}
+			}
+			
+			if(mayInterruptIfRunning) {
+				executor.shutdownNow();
+				for (TaskLane lane : lanes.values()) {
+					lane.executor.shutdownNow();
+				}
+			}
+			else {
+				executor.shutdown();
+				for (TaskLane lane : lanes.values()) {
+					lane.executor.shutdown();
+				}
+			}
+						
+		    try {
+		    	// Wait until all threads are finish
+				executor.awaitTermination(AWAIT_TERMINATION_TIME, TimeUnit.MILLISECONDS);
+				for (TaskLane lane : lanes.values()) {
+					lane.executor.awaitTermination(AWAIT_TERMINATION_TIME, TimeUnit.MILLISECONDS);
+				}
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		    
+		    // The timeouts apply while the tasks finish
+		    watchdog.shutdown();
+
+		}
+		
+	}
+	
+	/**
+	 * Shutdown the manager draining the queues, and persists the tasks that 
+	 * did not run. New, delayed and periodic tasks are discarded, throttled 
+	 * tasks are not run. The queued 
+	 * tasks keep running by priority until the drain time elapses, then the 
+	 * running ones are interrupted and the queued ones are cancelled. 
+	 * The cancelled Persistable tasks are written to the file, use 
+	 * restore on the next start to execute them again.
+	 * Invocation has no additional effect if already shut down.
+	 * 
+	 * WARNING: The caller waits up to the drain time, and the file is written 
+	 * on the caller thread.
+	 * 
+	 * @param drainTime The maximum time to run the queued tasks.
+	 * @param unit The drainTime unit.
+	 * @param file The file to write the tasks, it is deleted if there are none.
+	 * @return The number of persisted tasks.
+	 */
+	public int shutdown(long drainTime, TimeUnit unit, File file) {
+		
+		if (unit == null) {
+			throw new IllegalArgumentException("unit argument is null.");
+		}
+		
+		if (file == null) {
+			throw new IllegalArgumentException("file argument is null.");
+		}
+		
+		if (executor.isShutdown()) {
+			return 0;
+		}
+		
+		// Discards delayed and periodic tasks, the watchdog keeps 
+		// interrupting timed out tasks while draining
+		scheduler.shutdown();
+		
+		// The throttled tasks do not run, they are persisted
+		final List<Runnable> throttled = new ArrayList<Runnable>();
+		for (TaskLimiter limiter : limiters.values()) {
+			throttled.addAll(limiter.drain());
+		}
+		
+		executor.shutdown();
+		for (TaskLane lane : lanes.values()) {
+			lane.executor.shutdown();
+		}
+		
+		// Drains by priority while there is time
+		final long deadline = System.nanoTime() + unit.toNanos(drainTime);
+		try {
+			executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+			for (TaskLane lane : lanes.values()) {
+				lane.executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		
+		final List<Runnable> pending = new ArrayList<Runnable>(executor.shutdownNow());
+		for (TaskLane lane : lanes.values()) {
+			pending.addAll(lane.executor.shutdownNow());
+		}
+		pending.addAll(throttled);
+		
+		watchdog.shutdown();
+		
+		final List<Task<?>> tasks = new ArrayList<Task<?>>();
+		collectPersistable(pending, tasks);
+		
+		return persist(tasks, file);
+	}
+	
+	/**
+	 * Executes the tasks persisted on a previous shutdown, and deletes the file. 
+	 * Tasks that can not be read, e.g. their class has changed, are discarded.
+	 * 
+	 * WARNING: The file is read on the caller thread, call it from a task 
+	 * on startup, e.g. on LANE_IO, not from the main thread.
+	 * 
+	 * @param file The file written by shutdown.
+	 * @return The number of executed tasks, zero if there is no file.
+	 */
+	public int restore(File file) {
+		
+		if (file == null) {
+			throw new IllegalArgumentException("file argument is null.");
+		}
+		
+		if (!file.exists()) {
+			return 0;
+		}
+		
+		final List<Task<?>> tasks = new ArrayList<Task<?>>();
+		
+		try {
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			try {
+				
+				if (in.readInt() == PERSISTENCE_VERSION) {
+					
+					final int count = in.readInt();
+					for (int i = 0; i < count; i++) {
+						
+						final long id = in.readLong();
+						final int priority = in.readInt();
+						final String lane = in.readBoolean() ? in.readUTF() : null;
+						final byte[] bytes = new byte[in.readInt()];
+						in.readFully(bytes);
+						
+						final Task<?> task = deserialize(bytes);
+						if (task != null) {
+							task.restore(id, priority, lane);
+							tasks.add(task);
+						}
+					}
+				}
+				
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			Logger.e(TaskManager.class.getSimpleName(), "Persisted tasks can not be read.", e);
+		}
+		
+		file.delete();
+		
+		for (Task<?> task : tasks) {
+			execute(task);
+		}
+		
+		return tasks.size();
+	}
+	
+	/**
+	 * Cancels the pending tasks and collects the persistable ones.
+	 * @param pending The pending future tasks and batches.
+	 * @param tasks The persistable tasks.
+	 */
+	private static void collectPersistable(List<Runnable> pending, List<Task<?>> tasks) {
+		
+		for (Runnable runnable : pending) {
+			
+			if (runnable instanceof TaskBatch) {
+				// The batch cancel would cancel its tasks too, so they go first
+				final TaskBatch batch = (TaskBatch) runnable;
+				for (PriorityFutureTask<?> future : batch.getTasks()) {
+					if (future.cancel(false) && isPersistable(future.getTask())) {
+						tasks.add(future.getTask());
+					}
+				}
+				batch.cancel(false);
+			}
+			else if (runnable instanceof PriorityFutureTask<?>) {
+				final PriorityFutureTask<?> future = (PriorityFutureTask<?>) runnable;
+				if (future.cancel(false) && isPersistable(future.getTask())) {
+					tasks.add(future.getTask());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Check if a task is written to the shutdown file.
+	 * @param task The task.
+	 * @return True if it is Persistable and it is not on a PersistentTaskQueue.
+	 */
+	private static boolean isPersistable(Task<?> task) {
+		return task instanceof Persistable && !task.stored;
+	}
+	
+	/**
+	 * Writes the tasks to a file. A task that can not be serialized is discarded.
+	 * @param tasks The persistable tasks.
+	 * @param file The file, it is deleted if there are no tasks.
+	 * @return The number of written tasks.
+	 */
+	private static int persist(List<Task<?>> tasks, File file) {
+		
+		final List<Task<?>> written = new ArrayList<Task<?>>(tasks.size());
+		final List<byte[]> serialized = new ArrayList<byte[]>(tasks.size());
+		
+		for (Task<?> task : tasks) {
+			try {
+				serialized.add(serialize(task));
+				written.add(task);
+			} catch (IOException e) {
+				Logger.e(TaskManager.class.getSimpleName(), "Task can not be persisted: " + task.getClass().getName(), e);
+			}
+		}
+		
+		if (written.isEmpty()) {
+			file.delete();
+			return 0;
+		}
+		
+		// Writes a temporary file first, a partial file is never restored
+		final File temporary = new File(file.getPath() + ".tmp");
+		
+		try {
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+			try {
+				
+				out.writeInt(PERSISTENCE_VERSION);
+				out.writeInt(written.size());
+				
+				for (int i = 0; i < written.size(); i++) {
+					
+					final Task<?> task = written.get(i);
+					final byte[] bytes = serialized.get(i);
+					
+					out.writeLong(task.getId());
+					out.writeInt(task.getPriority());
+					out.writeBoolean(task.getLane() != null);
+					if (task.getLane() != null) {
+						out.writeUTF(task.getLane());
+					}
+					out.writeInt(bytes.length);
+					out.write(bytes);
+				}
+				
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			Logger.e(TaskManager.class.getSimpleName(), "Tasks can not be persisted.", e);
+			temporary.delete();
+			return 0;
+		}
+		
+		file.delete();
+		if (!temporary.renameTo(file)) {
+			Logger.e(TaskManager.class.getSimpleName(), "Tasks can not be persisted, rename failed.");
+			temporary.delete();
+			return 0;
+		}
+		
+		return written.size();
+	}
+	
+	/**
+	 * Serializes a task.
+	 * @param task The persistable task.
+	 * @return The bytes.
+	 * @throws IOException If a field is not serializable.
+	 */
+	static byte[] serialize(Task<?> task) throws IOException {
+		
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bytes);
+		try {
+			out.writeObject(task);
+		} finally {
+			out.close();
+		}
+		
+		return bytes.toByteArray();
+	}
+	
+	/**
+	 * Deserializes a task.
+	 * @param bytes The bytes.
+	 * @return The task, null if it can not be read.
+	 */
+	static Task<?> deserialize(byte[] bytes) {
+		try {
+			final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+			try {
+				return (Task<?>) in.readObject();
+			} finally {
+				in.close();
+			}
+		} catch (IOException | ClassNotFoundException | ClassCastException e) {
+			Logger.e(TaskManager.class.getSimpleName(), "Persisted task can not be read.", e);
+			return null;
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#finalize()
+	 */
+	@Override
+	protected void finalize() throws Throwable {
+		if (executor != null && !executor.isShutdown()) {
+			scheduler.shutdown();
+			watchdog.shutdown();
+			executor.shutdownNow();
+			for (TaskLane lane : lanes.values()) {
+				lane.executor.shutdownNow();
+			}
+		}
+		super.finalize();
+	}
+    
+	/**
+	 * A lane: its thread pool and metrics.
+	 */
+	private static final class TaskLane {
+		
+		/**
+		 * The lane thread pool.
+		 */
+		final ThreadPoolExecutor executor;
+		/**
+		 * The lane metrics.
+		 */
+		final TaskMetrics metrics;
+		
+		/**
+		 * Builder.
+		 * @param executor The lane thread pool.
+		 * @param metrics The lane metrics.
+		 */
+		TaskLane(ThreadPoolExecutor executor, TaskMetrics metrics) {
+			this.executor = executor;
+			this.metrics = metrics;
+		}
+		
+	}
+	
+	/**
+	 * The coalescing key of a task, its class and identifier: tasks of 
+	 * different classes can share an identifier but not a result.
+	 */
+	private static final class CoalescingKey {
+		
+		/**
+		 * The task class.
+		 */
+		private final Class<?> type;
+		/**
+		 * The task identifier.
+		 */
+		private final long id;
+		
+		/**
+		 * Builder.
+		 * @param task The task.
+		 */
+		CoalescingKey(Task<?> task) {
+			this.type = task.getClass();
+			this.id = task.getId();
+		}
+		
+		/* (non-Javadoc)
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object o) {
+			
+			if (!(o instanceof CoalescingKey)) {
+				return false;
+			}
+			
+			final CoalescingKey other = (CoalescingKey) o;
+			return id == other.id && type == other.type;
+		}
+		
+		/* (non-Javadoc)
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			return 31 * type.hashCode() + (int) (id ^ (id >>> 32));
+		}
+		
+	}
+	
+	/**
+	 * Orders future tasks by static priority only, the sort is stable.
+	 */
+	private static final Comparator<PriorityFutureTask<?>> BY_PRIORITY = new Comparator<PriorityFutureTask<?>>() {
+		@Override
+		public int compare(PriorityFutureTask<?> lhs, PriorityFutureTask<?> rhs) {
+			return lhs.getPriority() < rhs.getPriority() ? -1 : (lhs.getPriority() == rhs.getPriority() ? 0 : 1);
+		}
+	};
+	
+	/**
+	 * Task manager configuration.
+	 */
+	public static final class Builder {
+		
+		/**
+		 * The number of threads.
+		 */
+		private int threadPoolSize = DEFAULT_CORE_POOL_SIZE;
+		/**
+		 * The engine.
+		 */
+		private ENGINE engine = ENGINE.PRIORITY_QUEUE;
+		/**
+		 * The maximum number of queued tasks, zero for unbounded.
+		 */
+		private int queueCapacity;
+		/**
+		 * The bounded queue overflow policy.
+		 */
+		private OVERFLOW_POLICY overflowPolicy = OVERFLOW_POLICY.BLOCK;
+		/**
+		 * The rejected task listener.
+		 */
+		private RejectedTaskListener rejectedTaskListener;
+		/**
+		 * Nanoseconds to climb one priority level while queued, zero for no aging.
+		 */
+		private long agingTime;
+		/**
+		 * True to coalesce tasks with the same identifier.
+		 */
+		private boolean coalescing;
+		/**
+		 * Log one of each this number of task runs, zero for none.
+		 */
+		private int traceSampling = DEFAULT_TRACE_SAMPLING;
+		/**
+		 * Minimum number of threads with adaptive pool size.
+		 */
+		private int minPoolSize;
+		/**
+		 * Maximum number of threads with adaptive pool size, zero for a fixed pool.
+		 */
+		private int maxPoolSize;
+		/**
+		 * Number of threads by lane name, but the default one.
+		 */
+		private final Map<String, Integer> lanes = new HashMap<String, Integer>();
+		/**
+		 * Limits by task tag or class name.
+		 */
+		private final Map<String, Limit> limits = new HashMap<String, Limit>();
+		
+		/**
+		 * Builder, with the I/O lane.
+		 */
+		public Builder() {
+			lanes.put(LANE_IO, DEFAULT_IO_POOL_SIZE);
+		}
+		
+		/**
+		 * Sets the number of threads to keep in the pool, even if they are idle.
+		 * @param threadPoolSize The number of threads. DEFAULT_CORE_POOL_SIZE 
+		 * will be set for negative values.
+		 * @return This builder.
+		 */
+		public Builder setThreadPoolSize(int threadPoolSize) {
+			this.threadPoolSize = threadPoolSize > 0 ? threadPoolSize : DEFAULT_CORE_POOL_SIZE;
+			return this;
+		}
+		
+		/**
+		 * Sets the engine, PRIORITY_QUEUE by default.
+		 * @param engine The engine.
+		 * @return This builder.
+		 */
+		public Builder setEngine(ENGINE engine) {
+			
+			if (engine == null) {
+				throw new IllegalArgumentException("engine argument is null.");
+			}
+			
+			this.engine = engine;
+			return this;
+		}
+		
+		/**
+		 * Bounds the task queue, unbounded by default. 
+		 * Only supported by the PRIORITY_QUEUE engine.
+		 * @param queueCapacity The maximum number of waiting tasks, zero for unbounded.
+		 * @param overflowPolicy What to do with a new task when the queue is full.
+		 * @return This builder.
+		 */
+		public Builder setQueueCapacity(int queueCapacity, OVERFLOW_POLICY overflowPolicy) {
+			
+			if (queueCapacity < 0) {
+				throw new IllegalArgumentException("queueCapacity argument is negative.");
+			}
+			
+			if (overflowPolicy == null) {
+				throw new IllegalArgumentException("overflowPolicy argument is null.");
+			}
+			
+			this.queueCapacity = queueCapacity;
+			this.overflowPolicy = overflowPolicy;
+			return this;
+		}
+		
+		/**
+		 * Enables priority aging, disabled by default. A queued task climbs one 
+		 * priority level (e.g. LOW to DEFAULT) each time the aging time elapses, 
+		 * so low priority tasks can not be starved by high priority ones.
+		 * @param agingTime The time to climb one level, zero to disable.
+		 * @param unit The agingTime unit.
+		 * @return This builder.
+		 */
+		public Builder setPriorityAging(long agingTime, TimeUnit unit) {
+			
+			if (agingTime < 0) {
+				throw new IllegalArgumentException("agingTime argument is negative.");
+			}
+			
+			if (unit == null) {
+				throw new IllegalArgumentException("unit argument is null.");
+			}
+			
+			this.agingTime = unit.toNanos(agingTime);
+			return this;
+		}
+		
+		/**
+		 * Enables adaptive pool size, disabled by default. The pool starts with 
+		 * the available processors and grows when tasks wait on the queue while 
+		 * the workers are blocked, as with I/O or database tasks. It shrinks when 
+		 * the workers are idle, idle workers time out. Replaces the thread pool size.
+		 * Only supported by PRIORITY_QUEUE engine.
+		 * @param minPoolSize The minimum number of threads, at least one.
+		 * @param maxPoolSize The maximum number of threads, at least minPoolSize.
+		 * @return This builder.
+		 */
+		public Builder setAdaptivePoolSize(int minPoolSize, int maxPoolSize) {
+			
+			if (minPoolSize < 1) {
+				throw new IllegalArgumentException("minPoolSize argument is lower than one.");
+			}
+			
+			if (maxPoolSize < minPoolSize) {
+				throw new IllegalArgumentException("maxPoolSize argument is lower than minPoolSize.");
+			}
+			
+			this.minPoolSize = minPoolSize;
+			this.maxPoolSize = maxPoolSize;
+			return this;
+		}
+		
+		/**
+		 * Adds a lane, or sets the number of threads of an existing one. 
+		 * Each lane has its own fixed thread pool and priority queue, its idle 
+		 * threads time out. The I/O lane, LANE_IO, is added by default. 
+		 * The default lane, LANE_CPU, is set with the other builder methods.
+		 * @param lane The lane name.
+		 * @param poolSize The number of threads, zero removes the lane 
+		 * and its tasks run on the default lane.
+		 * @return This builder.
+		 */
+		public Builder setLane(String lane, int poolSize) {
+			
+			if (lane == null || LANE_CPU.equals(lane)) {
+				throw new IllegalArgumentException("lane argument is null or the default lane.");
+			}
+			
+			if (poolSize < 0) {
+				throw new IllegalArgumentException("poolSize argument is negative.");
+			}
+			
+			if (poolSize == 0) {
+				lanes.remove(lane);
+			}
+			else {
+				lanes.put(lane, poolSize);
+			}
+			return this;
+		}
+		
+		/**
+		 * Limits the number of tasks with a tag, or of a class, that run at 
+		 * the same time. The tasks over the limit wait by priority without 
+		 * taking a worker, so the other tasks are not slowed down.
+		 * @param key The task tag, see Task.setTag, or the task class name 
+		 * for the tasks without tag.
+		 * @param maxConcurrent The max number of running tasks, zero for no limit.
+		 * @return This builder.
+		 */
+		public Builder setConcurrencyLimit(String key, int maxConcurrent) {
+			
+			if (key == null) {
+				throw new IllegalArgumentException("key argument is null.");
+			}
+			
+			if (maxConcurrent < 0) {
+				throw new IllegalArgumentException("maxConcurrent argument is negative.");
+			}
+			
+			limitOf(key).maxConcurrent = maxConcurrent;
+			return this;
+		}
+		
+		/**
+		 * Limits the number of tasks with a tag, or of a class, that start 
+		 * per period. Up to the permits start at once, then one each 
+		 * period / permits. The tasks over the limit wait by priority without 
+		 * taking a worker, so the other tasks are not slowed down.
+		 * @param key The task tag, see Task.setTag, or the task class name 
+		 * for the tasks without tag.
+		 * @param permits The number of starts per period, zero for no limit.
+		 * @param period The period.
+		 * @param unit The period unit.
+		 * @return This builder.
+		 */
+		public Builder setRateLimit(String key, int permits, long period, TimeUnit unit) {
+			
+			if (key == null) {
+				throw new IllegalArgumentException("key argument is null.");
+			}
+			
+			if (permits < 0) {
+				throw new IllegalArgumentException("permits argument is negative.");
+			}
+			
+			if (period <= 0) {
+				throw new IllegalArgumentException("period argument is not positive.");
+			}
+			
+			if (unit == null) {
+				throw new IllegalArgumentException("unit argument is null.");
+			}
+			
+			final Limit limit = limitOf(key);
+			limit.permits = permits;
+			limit.period = unit.toNanos(period);
+			return this;
+		}
+		
+		/**
+		 * Get the limits of a key, adding them if needed.
+		 * @param key The task tag or class name.
+		 * @return The limits.
+		 */
+		private Limit limitOf(String key) {
+			
+			Limit limit = limits.get(key);
+			if (limit == null) {
+				limit = new Limit();
+				limits.put(key, limit);
+			}
+			
+			return limit;
+		}
+		
+		/**
+		 * Sets how many task runs are logged with Logger.performance. 
+		 * Run times are always recorded on the metrics, without allocations, 
+		 * the log builds strings so by default only one of each 
+		 * DEFAULT_TRACE_SAMPLING runs is logged.
+		 * @param traceSampling Log one of each this number of runs, 1 for all, zero for none.
+		 * @return This builder.
+		 */
+		public Builder setTraceSampling(int traceSampling) {
+			
+			if (traceSampling < 0) {
+				throw new IllegalArgumentException("traceSampling argument is negative.");
+			}
+			
+			this.traceSampling = traceSampling;
+			return this;
+		}
+		
+		/**
+		 * Enables task coalescing, disabled by default. A task submitted while 
+		 * another one of the same class and identifier is queued or running is 
+		 * not run, it shares the result of the other one and its observers are 
+		 * notified. Tasks with the default identifier, zero, are not coalesced.
+		 * @param coalescing True to enable.
+		 * @return This builder.
+		 */
+		public Builder setCoalescing(boolean coalescing) {
+			this.coalescing = coalescing;
+			return this;
+		}
+		
+		/**
+		 * Sets the listener of the tasks rejected by the overflow policy.
+		 * @param rejectedTaskListener The listener, null for none.
+		 * @return This builder.
+		 */
+		public Builder setRejectedTaskListener(RejectedTaskListener rejectedTaskListener) {
+			this.rejectedTaskListener = rejectedTaskListener;
+			return this;
+		}
+		
+		/**
+		 * Builds the task manager.
+		 * @return The task manager.
+		 * @throws IllegalStateException if the configuration is not supported.
+		 */
+		public TaskManager build() {
+			
+			if (queueCapacity > 0 && engine == ENGINE.WORK_STEALING) {
+				throw new IllegalStateException("Bounded queue is only supported by PRIORITY_QUEUE engine.");
+			}
+			
+			if (maxPoolSize > 0 && engine == ENGINE.WORK_STEALING) {
+				throw new IllegalStateException("Adaptive pool size is only supported by PRIORITY_QUEUE engine.");
+			}
+			
+			return new TaskManager(this);
+		}
+		
+		/**
+		 * The limits of a task tag or class.
+		 */
+		private static final class Limit {
+			
+			/**
+			 * The max number of running tasks, zero for no limit.
+			 */
+			int maxConcurrent;
+			/**
+			 * The number of starts per period, zero for no limit.
+			 */
+			int permits;
+			/**
+			 * The period in nanoseconds.
+			 */
+			long period;
+			
+		}
+		
+	}
+    
+	/**
+	 * Notified when a task is rejected because the bounded queue is full 
+	 * or the manager is shutdown. The rejected task is cancelled.
+	 * 
+	 * WARNING: The notify is made in the thread that executes the new task.
+	 */
+	public interface RejectedTaskListener {
+		
+		/**
+		 * Notify a rejected task.
+		 * @param task The rejected task.
+		 */
+		public void onTaskRejected(Task<?> task);
+		
+	}
+	
+	/**
+	 * Runs on the scheduler thread at each period, queues one run of the task.
+	 */
+	private final class PeriodicAction implements Runnable {
+		
+		/**
+		 * The periodic task future.
+		 */
+		private final PriorityFutureTask<?> future;
+		/**
+		 * The period in nanoseconds.
+		 */
+		private final long period;
+		/**
+		 * True for fixed rate, false for fixed delay.
+		 */
+		private final boolean fixedRate;
+		/**
+		 * The scheduled time of the current run.
+		 */
+		private long time;
+		
+		/**
+		 * Builder.
+		 * @param future The periodic task future.
+		 * @param time The first run time.
+		 * @param period The period in nanoseconds.
+		 * @param fixedRate True for fixed rate, false for fixed delay.
+		 */
+		PeriodicAction(PriorityFutureTask<?> future, long time, long period, boolean fixedRate) {
+			this.future = future;
+			this.time = time;
+			this.period = period;
+			this.fixedRate = fixedRate;
+			
+			// Called by the worker at the end of each run that can run again
+			future.setPeriodic(new Runnable() {
+				@Override
+				public void run() {
+					scheduleNext();
+				}
+			});
+		}
+		
+		/**
+		 * Schedules the next run.
+		 */
+		private void scheduleNext() {
+			time = fixedRate ? time + period : System.nanoTime() + period;
+			scheduler.scheduleAt(this, time);
+		}
+		
+		/* (non-Javadoc)
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			
+			if (future.isDone()) {
+				return;
+			}
+			
+			// Queued as any task, on its lane, limits, timeout and deadline. 
+			// If the run is rejected, also on shutdown, the task is cancelled
+			enqueue(future);
+		}
+		
+	}
+	
+	/**
+	 * Applies the overflow policy when the bounded queue is full.
+	 */
+	private final class OverflowHandler implements RejectedExecutionHandler {
+		
+		/**
+		 * The policy.
+		 */
+		private final OVERFLOW_POLICY policy;
+		/**
+		 * The executor queue.
+		 */
+		private final BoundedPriorityBlockingQueue queue;
+		/**
+		 * True on the pool workers, null on any other thread.
+		 */
+		private final ThreadLocal<Boolean> worker = new ThreadLocal<Boolean>();
+		
+		/**
+		 * Builder.
+		 * @param policy The policy.
+		 * @param queue The executor queue.
+		 */
+		OverflowHandler(OVERFLOW_POLICY policy, BoundedPriorityBlockingQueue queue) {
+			this.policy = policy;
+			this.queue = queue;
+		}
+		
+		/**
+		 * Get a thread factory that marks the pool workers.
+		 * @param factory The pool thread factory.
+		 * @return The thread factory.
+		 */
+		ThreadFactory newThreadFactory(final ThreadFactory factory) {
+			return new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					return factory.newThread(new Runnable() {
+						@Override
+						public void run() {
+							worker.set(Boolean.TRUE);
+							runnable.run();
+						}
+					});
+				}
+			};
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.concurrent.RejectedExecutionHandler#rejectedExecution(java.lang.Runnable, java.util.concurrent.ThreadPoolExecutor)
+		 */
+		@Override
+		public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+			
+			if (executor.isShutdown()) {
+				reject(r);
+				return;
+			}
+			
+			switch (policy) {
+			case BLOCK:
+				if (worker.get() != null) {
+					// A worker waiting for space would not drain the queue
+					reject(r);
+					break;
+				}
+				try {
+					queue.put(r);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					reject(r);
+				}
+				break;
+				
+			case DROP_LOWEST_PRIORITY:
+				final Runnable lowest = queue.offerReplacingLowest(r);
+				if (lowest != null) {
+					reject(lowest);
+				}
+				break;
+				
+			case COALESCE:
+				final Task<?> task = r instanceof PriorityFutureTask<?> ? ((PriorityFutureTask<?>) r).getTask() : null;
+				final Runnable replaced = task != null ? queue.offerReplacingId(r, task) : r;
+				if (replaced == r) {
+					reject(r);
+				}
+				else if (replaced != null) {
+					// The callers of the replaced task share the result of the new one
+					final PriorityFutureTask<?> replacement = (PriorityFutureTask<?>) r;
+					final PriorityFutureTask<?> follower = (PriorityFutureTask<?>) replaced;
+					replacement.addListener(new Runnable() {
+						@Override
+						public void run() {
+							follower.completeFrom(replacement);
+						}
+					});
+				}
+				break;
+				
+			case REJECT:
+			default:
+				reject(r);
+				break;
+			}
+		}
+		
+	}
+	
 }
@@ -0,0 +1,613 @@
+/*
+ * TaskMetrics
+ * 
+ * 0.3
+ * 
+ * 2026/10/18
+ * 
+ * (The MIT License)
+ * 
+ * Copyright (c) R2B Apps <r2b.apps@gmail.com>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * 'Software'), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED 'AS IS', WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+
+package r2b.apps.lib.taskmanager;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runtime metrics of a TaskManager: counters and latency histograms, 
+ * per priority and per task class. 
+ * 
+ * Recording is lock-free and does not allocate, except the first time 
+ * a task class runs. Continuations and periodic runs are recorded with 
+ * the PriorityFutureTask class.
+ */
+public final class TaskMetrics {
+	
+	/**
+	 * The priority levels, cached to not copy them.
+	 */
+	private static final PRIORITY[] LEVELS = PRIORITY.values();
+	
+	/**
+	 * Log one of each this number of task runs, zero for none.
+	 */
+	private volatile int traceSampling;
+	/**
+	 * Number of queued tasks.
+	 */
+	private final AtomicLong submitted = new AtomicLong();
+	/**
+	 * Number of tasks completed normally.
+	 */
+	private final AtomicLong completed = new AtomicLong();
+	/**
+	 * Number of tasks completed with an exception, timed out ones included.
+	 */
+	private final AtomicLong failed = new AtomicLong();
+	/**
+	 * Number of queued tasks cancelled before completing.
+	 */
+	private final AtomicLong cancelled = new AtomicLong();
+	/**
+	 * Number of tasks rejected by the queue.
+	 */
+	private final AtomicLong rejected = new AtomicLong();
+	/**
+	 * Number of tasks not run because their deadline passed.
+	 */
+	private final AtomicLong expired = new AtomicLong();
+	/**
+	 * Number of tasks that exceeded their timeout.
+	 */
+	private final AtomicLong timedOut = new AtomicLong();
+	/**
+	 * Sum of the worker busy time in nanoseconds.
+	 */
+	private final AtomicLong busyTime = new AtomicLong();
+	/**
+	 * Number of running tasks.
+	 */
+	private final AtomicInteger active = new AtomicInteger();
+	/**
+	 * Queue wait time per priority level.
+	 */
+	private final LatencyHistogram[] waitTimes = new LatencyHistogram[LEVELS.length];
+	/**
+	 * Run time per priority level.
+	 */
+	private final LatencyHistogram[] runTimes = new LatencyHistogram[LEVELS.length];
+	/**
+	 * Metrics per task class.
+	 */
+	private final ConcurrentMap<Class<?>, ClassMetrics> classes = new ConcurrentHashMap<Class<?>, ClassMetrics>();
+	
+	/**
+	 * Builder.
+	 */
+	TaskMetrics() {
+		for (int i = 0; i < LEVELS.length; i++) {
+			waitTimes[i] = new LatencyHistogram();
+			runTimes[i] = new LatencyHistogram();
+		}
+	}
+	
+	/**
+	 * Sets the trace sampling.
+	 * @param traceSampling Log one of each this number of task runs, zero for none.
+	 */
+	void setTraceSampling(int traceSampling) {
+		this.traceSampling = traceSampling;
+	}
+	
+	/**
+	 * Check whether a task run must be logged, without allocations. 
+	 * The sample is taken by the enqueue sequence.
+	 * @param future The task.
+	 * @return True to log it.
+	 */
+	boolean isTraced(PriorityFutureTask<?> future) {
+		final int sampling = traceSampling;
+		return sampling > 0 && future.getSequence() % sampling == 0;
+	}
+	
+	/**
+	 * Records a queued task.
+	 */
+	void submitted() {
+		submitted.incrementAndGet();
+	}
+	
+	/**
+	 * Records a rejected task.
+	 */
+	void rejected() {
+		rejected.incrementAndGet();
+	}
+	
+	/**
+	 * Records an expired task.
+	 */
+	void expired() {
+		expired.incrementAndGet();
+	}
+	
+	/**
+	 * Records a task start, with its queue wait time.
+	 * @param future The started task.
+	 * @return The start time in nanoseconds.
+	 */
+	long started(PriorityFutureTask<?> future) {
+		
+		final long now = System.nanoTime();
+		
+		active.incrementAndGet();
+		if (!future.isDone()) {
+			waitTimes[level(future.getPriority())].record(now - future.getEnqueueTime());
+		}
+		
+		return now;
+	}
+	
+	/**
+	 * Records a task end, with its outcome and run time.
+	 * @param future The finished task.
+	 * @param start The start time in nanoseconds.
+	 */
+	void finished(PriorityFutureTask<?> future, long start) {
+		
+		final long runTime = System.nanoTime() - start;
+		
+		active.decrementAndGet();
+		busyTime.addAndGet(runTime);
+		
+		if (future.isCancelled()) {
+			cancelled.incrementAndGet();
+			return;
+		}
+		
+		runTimes[level(future.getPriority())].record(runTime);
+		
+		final ClassMetrics classMetrics = forClass(future.getTask() != null ? future.getTask().getClass() : future.getClass());
+		classMetrics.runTime.record(runTime);
+		
+		// A periodic task is not done after a run that can run again
+		if (!future.isDone() || future.getFailure() == null) {
+			completed.incrementAndGet();
+			return;
+		}
+		
+		failed.incrementAndGet();
+		classMetrics.failed.incrementAndGet();
+		if (future.isTimedOut()) {
+			timedOut.incrementAndGet();
+		}
+	}
+	
+	/**
+	 * Get the rejected tasks.
+	 * @return The count.
+	 */
+	long getRejectedCount() {
+		return rejected.get();
+	}
+	
+	/**
+	 * Get the expired tasks.
+	 * @return The count.
+	 */
+	long getExpiredCount() {
+		return expired.get();
+	}
+	
+	/**
+	 * Get the timed out tasks.
+	 * @return The count.
+	 */
+	long getTimedOutCount() {
+		return timedOut.get();
+	}
+	
+	/**
+	 * Get the sum of the queue wait times of all the priorities.
+	 * @return The wait time in nanoseconds.
+	 */
+	long getWaitTimeTotal() {
+		long total = 0;
+		for (LatencyHistogram waitTime : waitTimes) {
+			total += waitTime.getTotal();
+		}
+		return total;
+	}
+	
+	/**
+	 * Get the number of queue waits of all the priorities.
+	 * @return The count.
+	 */
+	long getWaitCount() {
+		long count = 0;
+		for (LatencyHistogram waitTime : waitTimes) {
+			count += waitTime.getCount();
+		}
+		return count;
+	}
+	
+	/**
+	 * Takes a snapshot.
+	 * @param poolSize The number of workers.
+	 * @param queueSize The number of waiting tasks.
+	 * @return The snapshot.
+	 */
+	Snapshot snapshot(int poolSize, int queueSize) {
+		return new Snapshot(this, poolSize, queueSize);
+	}
+	
+	/**
+	 * Get the metrics of a task class, created on first use.
+	 * @param clazz The task class.
+	 * @return The metrics.
+	 */
+	private ClassMetrics forClass(Class<?> clazz) {
+		
+		ClassMetrics classMetrics = classes.get(clazz);
+		
+		if (classMetrics == null) {
+			final ClassMetrics created = new ClassMetrics();
+			classMetrics = classes.putIfAbsent(clazz, created);
+			if (classMetrics == null) {
+				classMetrics = created;
+			}
+		}
+		
+		return classMetrics;
+	}
+	
+	/**
+	 * Get the priority level of a priority value.
+	 * @param priority The priority value.
+	 * @return The index of the nearest level not lower than the value.
+	 */
+	private static int level(int priority) {
+		
+		for (int i = 0; i < LEVELS.length - 1; i++) {
+			if (priority <= LEVELS[i].getValue()) {
+				return i;
+			}
+		}
+		
+		return LEVELS.length - 1;
+	}
+	
+	/**
+	 * Metrics of a task class.
+	 */
+	private static final class ClassMetrics {
+		
+		/**
+		 * Run time.
+		 */
+		final LatencyHistogram runTime = new LatencyHistogram();
+		/**
+		 * Number of failures.
+		 */
+		final AtomicLong failed = new AtomicLong();
+		
+	}
+	
+	/**
+	 * Immutable copy of the metrics at a point in time. 
+	 * Counters are cumulative since the task manager creation, 
+	 * compare two snapshots to get rates. Times are in nanoseconds.
+	 */
+	public static final class Snapshot {
+		
+		/**
+		 * The snapshot System.currentTimeMillis().
+		 */
+		private final long timestamp;
+		/**
+		 * Number of workers.
+		 */
+		private final int poolSize;
+		/**
+		 * Number of waiting tasks.
+		 */
+		private final int queueSize;
+		/**
+		 * Number of running tasks.
+		 */
+		private final int activeCount;
+		/**
+		 * Counters.
+		 */
+		private final long submittedCount, completedCount, failedCount, cancelledCount, 
+				rejectedCount, expiredCount, timedOutCount, busyTime;
+		/**
+		 * Queue wait time per priority level.
+		 */
+		private final LatencyHistogram[] waitTimes = new LatencyHistogram[LEVELS.length];
+		/**
+		 * Run time per priority level.
+		 */
+		private final LatencyHistogram[] runTimes = new LatencyHistogram[LEVELS.length];
+		/**
+		 * Run time per task class.
+		 */
+		private final Map<Class<?>, LatencyHistogram> classRunTimes = new HashMap<Class<?>, LatencyHistogram>();
+		/**
+		 * Failures per task class.
+		 */
+		private final Map<Class<?>, Long> classFailedCounts = new HashMap<Class<?>, Long>();
+		
+		/**
+		 * Builder.
+		 * @param metrics The live metrics.
+		 * @param poolSize The number of workers.
+		 * @param queueSize The number of waiting tasks.
+		 */
+		private Snapshot(TaskMetrics metrics, int poolSize, int queueSize) {
+			
+			this.timestamp = System.currentTimeMillis();
+			this.poolSize = poolSize;
+			this.queueSize = queueSize;
+			this.activeCount = metrics.active.get();
+			this.submittedCount = metrics.submitted.get();
+			this.completedCount = metrics.completed.get();
+			this.failedCount = metrics.failed.get();
+			this.cancelledCount = metrics.cancelled.get();
+			this.rejectedCount = metrics.rejected.get();
+			this.expiredCount = metrics.expired.get();
+			this.timedOutCount = metrics.timedOut.get();
+			this.busyTime = metrics.busyTime.get();
+			
+			for (int i = 0; i < LEVELS.length; i++) {
+				waitTimes[i] = metrics.waitTimes[i].copy();
+				runTimes[i] = metrics.runTimes[i].copy();
+			}
+			
+			for (Map.Entry<Class<?>, ClassMetrics> entry : metrics.classes.entrySet()) {
+				classRunTimes.put(entry.getKey(), entry.getValue().runTime.copy());
+				classFailedCounts.put(entry.getKey(), entry.getValue().failed.get());
+			}
+		}
+		
+		/**
+		 * Builder, merges the snapshots of several lanes.
+		 * @param parts The lane snapshots.
+		 */
+		Snapshot(Snapshot[] parts) {
+			
+			int poolSize = 0, queueSize = 0, activeCount = 0;
+			long submittedCount = 0, completedCount = 0, failedCount = 0, cancelledCount = 0, 
+					rejectedCount = 0, expiredCount = 0, timedOutCount = 0, busyTime = 0;
+			
+			for (int i = 0; i < LEVELS.length; i++) {
+				waitTimes[i] = new LatencyHistogram();
+				runTimes[i] = new LatencyHistogram();
+			}
+			
+			for (Snapshot part : parts) {
+				
+				poolSize += part.poolSize;
+				queueSize += part.queueSize;
+				activeCount += part.activeCount;
+				submittedCount += part.submittedCount;
+				completedCount += part.completedCount;
+				failedCount += part.failedCount;
+				cancelledCount += part.cancelledCount;
+				rejectedCount += part.rejectedCount;
+				expiredCount += part.expiredCount;
+				timedOutCount += part.timedOutCount;
+				busyTime += part.busyTime;
+				
+				for (int i = 0; i < LEVELS.length; i++) {
+					waitTimes[i].add(part.waitTimes[i]);
+					runTimes[i].add(part.runTimes[i]);
+				}
+				
+				for (Map.Entry<Class<?>, LatencyHistogram> entry : part.classRunTimes.entrySet()) {
+					LatencyHistogram runTime = classRunTimes.get(entry.getKey());
+					if (runTime == null) {
+						runTime = new LatencyHistogram();
+						classRunTimes.put(entry.getKey(), runTime);
+					}
+					runTime.add(entry.getValue());
+					classFailedCounts.put(entry.getKey(), getFailedCount(entry.getKey()) + part.getFailedCount(entry.getKey()));
+				}
+			}
+			
+			this.timestamp = System.currentTimeMillis();
+			this.poolSize = poolSize;
+			this.queueSize = queueSize;
+			this.activeCount = activeCount;
+			this.submittedCount = submittedCount;
+			this.completedCount = completedCount;
+			this.failedCount = failedCount;
+			this.cancelledCount = cancelledCount;
+			this.rejectedCount = rejectedCount;
+			this.expiredCount = expiredCount;
+			this.timedOutCount = timedOutCount;
+			this.busyTime = busyTime;
+		}
+		
+		/**
+		 * Get the snapshot time.
+		 * @return The System.currentTimeMillis() of the snapshot.
+		 */
+		public long getTimestamp() {
+			return timestamp;
+		}
+		
+		/**
+		 * Get the number of workers.
+		 * @return The pool size.
+		 */
+		public int getPoolSize() {
+			return poolSize;
+		}
+		
+		/**
+		 * Get the number of waiting tasks.
+		 * @return The queue depth.
+		 */
+		public int getQueueSize() {
+			return queueSize;
+		}
+		
+		/**
+		 * Get the number of running tasks.
+		 * @return The busy workers.
+		 */
+		public int getActiveCount() {
+			return activeCount;
+		}
+		
+		/**
+		 * Get the worker utilisation.
+		 * @return The busy workers ratio, from 0 to 1.
+		 */
+		public double getUtilization() {
+			return poolSize == 0 ? 0 : Math.min(1, (double) activeCount / poolSize);
+		}
+		
+		/**
+		 * Get the sum of the worker busy time.
+		 * @return The busy time in nanoseconds.
+		 */
+		public long getBusyTime() {
+			return busyTime;
+		}
+		
+		/**
+		 * Get the number of queued tasks.
+		 * @return The count.
+		 */
+		public long getSubmittedCount() {
+			return submittedCount;
+		}
+		
+		/**
+		 * Get the number of tasks completed normally.
+		 * @return The count.
+		 */
+		public long getCompletedCount() {
+			return completedCount;
+		}
+		
+		/**
+		 * Get the number of tasks completed with an exception, timed out ones included.
+		 * @return The count.
+		 */
+		public long getFailedCount() {
+			return failedCount;
+		}
+		
+		/**
+		 * Get the number of queued tasks cancelled before completing.
+		 * @return The count.
+		 */
+		public long getCancelledCount() {
+			return cancelledCount;
+		}
+		
+		/**
+		 * Get the number of tasks rejected by the queue.
+		 * @return The count.
+		 */
+		public long getRejectedCount() {
+			return rejectedCount;
+		}
+		
+		/**
+		 * Get the number of tasks not run because their deadline passed.
+		 * @return The count.
+		 */
+		public long getExpiredCount() {
+			return expiredCount;
+		}
+		
+		/**
+		 * Get the number of tasks that exceeded their timeout.
+		 * @return The count.
+		 */
+		public long getTimedOutCount() {
+			return timedOutCount;
+		}
+		
+		/**
+		 * Get the queue wait time of a priority level. 
+		 * Priority values between levels are recorded on the next lower level.
+		 * @param priority The priority level.
+		 * @return The histogram.
+		 */
+		public LatencyHistogram getWaitTime(PRIORITY priority) {
+			return waitTimes[priority.ordinal()];
+		}
+		
+		/**
+		 * Get the run time of a priority level.
+		 * Priority values between levels are recorded on the next lower level.
+		 * @param priority The priority level.
+		 * @return The histogram.
+		 */
+		public LatencyHistogram getRunTime(PRIORITY priority) {
+			return runTimes[priority.ordinal()];
+		}
+		
+		/**
+		 * Get the task classes that have run.
+		 * @return The classes.
+		 */
+		public Set<Class<?>> getTaskClasses() {
+			return Collections.unmodifiableSet(classRunTimes.keySet());
+		}
+		
+		/**
+		 * Get the run time of a task class.
+		 * @param clazz The task class.
+		 * @return The histogram, null if the class has not run.
+		 */
+		public LatencyHistogram getRunTime(Class<?> clazz) {
+			return classRunTimes.get(clazz);
+		}
+		
+		/**
+		 * Get the failures of a task class.
+		 * @param clazz The task class.
+		 * @return The count.
+		 */
+		public long getFailedCount(Class<?> clazz) {
+			final Long count = classFailedCounts.get(clazz);
+			return count == null ? 0 : count;
+		}
+		
+	}
+
+}
@@ -0,0 +1,244 @@
+/*
+ * TaskScheduler
+ * 
+ * 0.3
+ * 
+ * 2026/10/18
+ * 
+ * (The MIT License)
+ * 
+ * Copyright (c) R2B Apps <r2b.apps@gmail.com>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * 'Software'), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED 'AS IS', WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+
+package r2b.apps.lib.taskmanager;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One thread that runs short actions at a given time, used to feed the 
+ * task manager pool with delayed and periodic tasks.
+ * 
+ * The actions run on the scheduler thread, so they must only hand the 
+ * work to the pool and return.
+ */
+final class TaskScheduler {
+
+	/**
+	 * Enqueue sequence generator, FIFO tie-break between equal times.
+	 */
+	private static final AtomicLong SEQUENCER = new AtomicLong();
+	
+	/**
+	 * The thread name.
+	 */
+	private final String name;
+	/**
+	 * The scheduled actions ordered by time.
+	 */
+	private final DelayQueue<Entry> queue = new DelayQueue<Entry>();
+	/**
+	 * The scheduler thread, null until the first schedule.
+	 */
+	private Thread thread;
+	/**
+	 * True when shutdown.
+	 */
+	private volatile boolean shutdown;
+	
+	/**
+	 * Builder. The thread starts on the first schedule.
+	 * @param name The thread name.
+	 */
+	TaskScheduler(String name) {
+		this.name = name;
+	}
+	
+	/**
+	 * Schedules an action.
+	 * @param action The action to run on the scheduler thread.
+	 * @param delay The time from now to run the action.
+	 * @param unit The delay unit.
+	 * @return The scheduled entry, it can be cancelled.
+	 */
+	Entry schedule(Runnable action, long delay, TimeUnit unit) {
+		return scheduleAt(action, System.nanoTime() + unit.toNanos(Math.max(0L, delay)));
+	}
+	
+	/**
+	 * Schedules an action.
+	 * @param action The action to run on the scheduler thread.
+	 * @param time The System.nanoTime() to run the action.
+	 * @return The scheduled entry, it can be cancelled.
+	 */
+	Entry scheduleAt(Runnable action, long time) {
+		
+		if (action == null) {
+			throw new IllegalArgumentException("action argument is null.");
+		}
+		
+		final Entry entry = new Entry(action, time, queue);
+		
+		if (!shutdown) {
+			start();
+			queue.add(entry);
+		}
+		
+		return entry;
+	}
+	
+	/**
+	 * Stops the scheduler thread, pending actions are discarded.
+	 */
+	synchronized void shutdown() {
+		
+		shutdown = true;
+		queue.clear();
+		
+		if (thread != null) {
+			thread.interrupt();
+			thread = null;
+		}
+	}
+	
+	/**
+	 * Starts the scheduler thread if it is not running.
+	 */
+	private synchronized void start() {
+		
+		if (thread != null || shutdown) {
+			return;
+		}
+		
+		thread = new Thread(name) {
+			@Override
+			public void run() {
+				while (!shutdown) {
+					try {
+						
+						final Entry entry = queue.take();
+						if (!entry.cancelled) {
+							entry.action.run();
+						}
+						
+					} catch (InterruptedException e) {
+						// Shutdown
+					} catch (RuntimeException e) {
+						e.printStackTrace();
+					}
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * A scheduled action.
+	 */
+	static final class Entry implements Delayed {
+		
+		/**
+		 * The action.
+		 */
+		private final Runnable action;
+		/**
+		 * The System.nanoTime() to run.
+		 */
+		private final long time;
+		/**
+		 * The tie-break order.
+		 */
+		private final long sequence = SEQUENCER.incrementAndGet();
+		/**
+		 * The scheduler queue.
+		 */
+		private final DelayQueue<Entry> queue;
+		/**
+		 * True if cancelled.
+		 */
+		private volatile boolean cancelled;
+		
+		/**
+		 * Builder.
+		 * @param action The action.
+		 * @param time The System.nanoTime() to run.
+		 * @param queue The scheduler queue.
+		 */
+		Entry(Runnable action, long time, DelayQueue<Entry> queue) {
+			this.action = action;
+			this.time = time;
+			this.queue = queue;
+		}
+		
+		/**
+		 * Get the time to run.
+		 * @return The System.nanoTime() to run.
+		 */
+		long getTime() {
+			return time;
+		}
+		
+		/**
+		 * Cancels the action if it has not run yet. 
+		 * The entry leaves the queue, so the action and what it references, 
+		 * like a finished task of a timeout, are not kept until its time.
+		 */
+		void cancel() {
+			cancelled = true;
+			queue.remove(this);
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.concurrent.Delayed#getDelay(java.util.concurrent.TimeUnit)
+		 */
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(time - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Comparable#compareTo(java.lang.Object)
+		 */
+		@Override
+		public int compareTo(Delayed other) {
+			
+			if (other == this) {
+				return 0;
+			}
+			
+			final Entry entry = (Entry) other;
+			final long diff = time - entry.time;
+			
+			if (diff != 0) {
+				return diff < 0 ? -1 : 1;
+			}
+			
+			return sequence < entry.sequence ? -1 : 1;
+		}
+		
+	}
+	
+}
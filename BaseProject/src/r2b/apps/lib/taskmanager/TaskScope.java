@@ -0,0 +1,281 @@
+/*
+ * TaskScope
+ * 
+ * 0.3
+ * 
+ * 2026/10/18
+ * 
+ * (The MIT License)
+ * 
+ * Copyright (c) R2B Apps <r2b.apps@gmail.com>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * 'Software'), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED 'AS IS', WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+
+package r2b.apps.lib.taskmanager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Binds the tasks to a lifecycle, e.g. an activity or fragment: the scope 
+ * is attached while the view is visible, detached when it is paused and 
+ * closed when it is destroyed.
+ * 
+ * The tasks executed through the scope are tracked until they are done. 
+ * The scope is also the executor to notify their results, 
+ * task.addObserver(observer, scope), so the observers are only notified 
+ * while attached, on the main thread by default. On detach, with CANCEL 
+ * policy the tracked tasks are cancelled, and with DETACH policy they keep 
+ * running and their notifications are kept in memory until the next attach. 
+ * On close the tasks are cancelled and the kept notifications discarded.
+ */
+public final class TaskScope implements Executor {
+
+	/**
+	 * What to do with the running tasks on detach.
+	 */
+	public static enum POLICY {
+		/**
+		 * Cancel the tasks, interrupting the running ones.
+		 */
+		CANCEL, 
+		/**
+		 * Keep the tasks running, notify their results on the next attach.
+		 */
+		DETACH
+	};
+	
+	/**
+	 * The task manager that runs the tasks.
+	 */
+	private final TaskManager taskManager;
+	/**
+	 * The detach policy.
+	 */
+	private final POLICY policy;
+	/**
+	 * The executor of the notifications while attached.
+	 */
+	private final Executor delivery;
+	/**
+	 * The tasks not done.
+	 */
+	private final ConcurrentHashMap<Task<?>, Boolean> tasks = new ConcurrentHashMap<Task<?>, Boolean>();
+	/**
+	 * The notifications kept while detached, guarded by this.
+	 */
+	private final List<Runnable> held = new ArrayList<Runnable>();
+	/**
+	 * True while attached, guarded by this.
+	 */
+	private boolean attached = true;
+	/**
+	 * True when closed, guarded by this.
+	 */
+	private boolean closed;
+	
+	/**
+	 * Builder, attached and notifying on the main thread.
+	 * @param taskManager The task manager that runs the tasks.
+	 * @param policy What to do with the running tasks on detach.
+	 */
+	public TaskScope(TaskManager taskManager, POLICY policy) {
+		this(taskManager, policy, MainThreadExecutor.getInstance());
+	}
+	
+	/**
+	 * Builder, attached.
+	 * @param taskManager The task manager that runs the tasks.
+	 * @param policy What to do with the running tasks on detach.
+	 * @param delivery The executor of the notifications while attached.
+	 */
+	public TaskScope(TaskManager taskManager, POLICY policy, Executor delivery) {
+		
+		if (taskManager == null) {
+			throw new IllegalArgumentException("taskManager argument is null.");
+		}
+		
+		if (policy == null) {
+			throw new IllegalArgumentException("policy argument is null.");
+		}
+		
+		if (delivery == null) {
+			throw new IllegalArgumentException("delivery argument is null.");
+		}
+		
+		this.taskManager = taskManager;
+		this.policy = policy;
+		this.delivery = delivery;
+	}
+	
+	/**
+	 * Executes a task tracked by the scope.
+	 * @param task The task to execute. If the scope is closed the task is cancelled.
+	 * @return The task result handle, null if the task is null.
+	 */
+	public <V> TaskFuture<V> execute(final Task<V> task) {
+		
+		if (task == null) {
+			return null;
+		}
+		
+		synchronized (this) {
+			if (closed) {
+				task.cancel(false);
+				return new TaskFuture<V>(taskManager, (PriorityFutureTask<V>) task.priorityFutureTask);
+			}
+			tasks.put(task, Boolean.TRUE);
+		}
+		
+		((PriorityFutureTask<V>) task.priorityFutureTask).addListener(new Runnable() {
+			@Override
+			public void run() {
+				tasks.remove(task);
+			}
+		});
+		
+		return taskManager.execute(task);
+	}
+	
+	/**
+	 * Runs a notification on the delivery executor while attached, 
+	 * keeps it while detached with DETACH policy, discards it otherwise.
+	 * @param command The notification.
+	 */
+	@Override
+	public void execute(final Runnable command) {
+		
+		if (command == null) {
+			throw new IllegalArgumentException("command argument is null.");
+		}
+		
+		if (hold(command)) {
+			return;
+		}
+		
+		delivery.execute(new Runnable() {
+			@Override
+			public void run() {
+				// Detached after the post
+				if (!hold(command)) {
+					command.run();
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Attaches the scope, the notifications kept while detached are run. 
+	 * Call it on resume.
+	 */
+	public void attach() {
+		
+		final List<Runnable> commands;
+		
+		synchronized (this) {
+			if (closed || attached) {
+				return;
+			}
+			attached = true;
+			commands = new ArrayList<Runnable>(held);
+			held.clear();
+		}
+		
+		for (Runnable command : commands) {
+			execute(command);
+		}
+	}
+	
+	/**
+	 * Detaches the scope, applying the policy. Call it on pause.
+	 */
+	public void detach() {
+		
+		synchronized (this) {
+			if (closed || !attached) {
+				return;
+			}
+			attached = false;
+		}
+		
+		if (policy == POLICY.CANCEL) {
+			cancelAll();
+		}
+	}
+	
+	/**
+	 * Closes the scope, cancels its tasks and discards the kept 
+	 * notifications. Call it on destroy.
+	 */
+	public void close() {
+		
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			attached = false;
+			held.clear();
+		}
+		
+		cancelAll();
+	}
+	
+	/**
+	 * Get the number of tasks not done.
+	 * @return The tracked tasks.
+	 */
+	public int getTaskCount() {
+		return tasks.size();
+	}
+	
+	/**
+	 * Check whether a notification must not run now, 
+	 * keeping it with DETACH policy.
+	 * @param command The notification.
+	 * @return True if kept or discarded, false if it must run.
+	 */
+	private synchronized boolean hold(Runnable command) {
+		
+		if (attached) {
+			return false;
+		}
+		
+		if (!closed && policy == POLICY.DETACH) {
+			held.add(command);
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Cancels the tracked tasks, interrupting the running ones.
+	 */
+	private void cancelAll() {
+		for (Task<?> task : tasks.keySet()) {
+			task.cancel(true);
+		}
+	}
+	
+}
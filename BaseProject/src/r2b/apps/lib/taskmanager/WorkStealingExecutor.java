@@ -0,0 +1,467 @@
+/*
+ * WorkStealingExecutor
+ * 
+ * 0.3
+ * 
+ * 2026/10/18
+ * 
+ * (The MIT License)
+ * 
+ * Copyright (c) R2B Apps <r2b.apps@gmail.com>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * 'Software'), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED 'AS IS', WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ */
+
+package r2b.apps.lib.taskmanager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Executor with one priority queue per worker thread instead of one shared queue.
+ * 
+ * Each worker takes the highest priority task of its own queue, so submitters 
+ * and workers do not contend on a single lock. When a worker runs out of work it 
+ * steals the highest priority task from the other workers. To keep the global 
+ * priority order, a worker also peeks one other queue before taking its own task 
+ * and takes the best of both.
+ * 
+ * Idle workers park until a push wakes them up, they do not poll, 
+ * so an idle pool does not use the CPU.
+ */
+final class WorkStealingExecutor extends AbstractExecutorService {
+
+	/**
+	 * Accepting and running tasks.
+	 */
+	private static final int RUNNING = 0;
+	/**
+	 * Not accepting tasks, running the queued ones.
+	 */
+	private static final int SHUTDOWN = 1;
+	/**
+	 * Not accepting tasks, not running the queued ones.
+	 */
+	private static final int STOP = 2;
+	
+	/**
+	 * The workers.
+	 */
+	private final Worker[] workers;
+	/**
+	 * The workers waiting for tasks.
+	 */
+	private final ConcurrentLinkedQueue<Worker> idleWorkers = new ConcurrentLinkedQueue<Worker>();
+	/**
+	 * Round robin index for tasks submitted from outside the pool.
+	 */
+	private final AtomicInteger nextWorker = new AtomicInteger();
+	/**
+	 * Counts down when a worker finishes.
+	 */
+	private final CountDownLatch termination;
+	/**
+	 * The executor state.
+	 */
+	private volatile int runState = RUNNING;
+	
+	/**
+	 * Builder. Starts all the workers.
+	 * @param threadPoolSize The number of workers.
+	 * @param comparator The task priority comparator.
+	 */
+	public WorkStealingExecutor(int threadPoolSize, Comparator<Runnable> comparator) {
+		
+		if (threadPoolSize <= 0) {
+			throw new IllegalArgumentException("threadPoolSize argument is not positive.");
+		}
+		
+		if (comparator == null) {
+			throw new IllegalArgumentException("comparator argument is null.");
+		}
+		
+		workers = new Worker[threadPoolSize];
+		termination = new CountDownLatch(threadPoolSize);
+		
+		for (int i = 0; i < threadPoolSize; i++) {
+			workers[i] = new Worker(i, comparator);
+		}
+		
+		for (Worker worker : workers) {
+			worker.start();
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.Executor#execute(java.lang.Runnable)
+	 */
+	@Override
+	public void execute(Runnable command) {
+		
+		if (command == null) {
+			throw new NullPointerException("command argument is null.");
+		}
+		
+		if (runState != RUNNING) {
+			throw new RejectedExecutionException("Executor is shutdown.");
+		}
+		
+		// Tasks submitted from a worker stay on its own queue
+		final Thread current = Thread.currentThread();
+		final Worker target;
+		if (current instanceof Worker && ((Worker) current).getExecutor() == this) {
+			target = (Worker) current;
+		}
+		else {
+			target = workers[(nextWorker.getAndIncrement() & Integer.MAX_VALUE) % workers.length];
+		}
+		
+		target.push(command);
+		
+		// Wake up one idle worker, it steals the task if the target is busy
+		final Worker idle = idleWorkers.poll();
+		if (idle != null) {
+			LockSupport.unpark(idle);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.ExecutorService#shutdown()
+	 */
+	@Override
+	public void shutdown() {
+		
+		if (runState == RUNNING) {
+			runState = SHUTDOWN;
+		}
+		
+		wakeUpAll();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.ExecutorService#shutdownNow()
+	 */
+	@Override
+	public List<Runnable> shutdownNow() {
+		
+		runState = STOP;
+		
+		final List<Runnable> pending = new ArrayList<Runnable>();
+		for (Worker worker : workers) {
+			worker.drainTo(pending);
+			worker.interrupt();
+		}
+		
+		wakeUpAll();
+		
+		return pending;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.ExecutorService#isShutdown()
+	 */
+	@Override
+	public boolean isShutdown() {
+		return runState != RUNNING;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.ExecutorService#isTerminated()
+	 */
+	@Override
+	public boolean isTerminated() {
+		return termination.getCount() == 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.ExecutorService#awaitTermination(long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return termination.await(timeout, unit);
+	}
+	
+	/**
+	 * Get the number of tasks waiting on all the worker queues.
+	 * @return The number of queued tasks.
+	 */
+	public int getQueueSize() {
+		int size = 0;
+		for (Worker worker : workers) {
+			size += worker.size();
+		}
+		return size;
+	}
+	
+	/**
+	 * Unparks all the workers.
+	 */
+	private void wakeUpAll() {
+		for (Worker worker : workers) {
+			LockSupport.unpark(worker);
+		}
+	}
+	
+	/**
+	 * Looks for a task on the other workers queues.
+	 * @param thief The worker that steals.
+	 * @return The stolen task, null if all the queues are empty.
+	 */
+	private Runnable steal(Worker thief) {
+		
+		for (int i = 1; i < workers.length; i++) {
+			final Runnable task = workers[(thief.index + i) % workers.length].poll();
+			if (task != null) {
+				return task;
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * A pool thread with its own priority queue.
+	 */
+	private final class Worker extends Thread {
+		
+		/**
+		 * The worker position.
+		 */
+		private final int index;
+		/**
+		 * The worker tasks, ordered by priority.
+		 */
+		private final PriorityQueue<Runnable> queue;
+		/**
+		 * Guards the queue. Only contended on steals.
+		 */
+		private final ReentrantLock lock = new ReentrantLock();
+		/**
+		 * The task comparator.
+		 */
+		private final Comparator<Runnable> comparator;
+		
+		/**
+		 * Builder.
+		 * @param index The worker position.
+		 * @param comparator The task comparator.
+		 */
+		Worker(int index, Comparator<Runnable> comparator) {
+			super("TaskManager-worker-" + String.valueOf(index));
+			this.index = index;
+			this.comparator = comparator;
+			this.queue = new PriorityQueue<Runnable>(11, comparator);
+		}
+		
+		/**
+		 * Get the owner executor.
+		 * @return The executor.
+		 */
+		WorkStealingExecutor getExecutor() {
+			return WorkStealingExecutor.this;
+		}
+		
+		/**
+		 * Adds a task.
+		 * @param task The task.
+		 */
+		void push(Runnable task) {
+			lock.lock();
+			try {
+				queue.add(task);
+			} finally {
+				lock.unlock();
+			}
+		}
+		
+		/**
+		 * Retrieves and removes the highest priority task.
+		 * @return The task or null if empty.
+		 */
+		Runnable poll() {
+			lock.lock();
+			try {
+				return queue.poll();
+			} finally {
+				lock.unlock();
+			}
+		}
+		
+		/**
+		 * Retrieves the highest priority task without removing it. 
+		 * Does not wait if the queue is locked.
+		 * @return The task or null if empty or locked.
+		 */
+		Runnable tryPeek() {
+			if (lock.tryLock()) {
+				try {
+					return queue.peek();
+				} finally {
+					lock.unlock();
+				}
+			}
+			return null;
+		}
+		
+		/**
+		 * Removes the task if it is queued. Does not wait if the queue is locked.
+		 * @param task The task.
+		 * @return True if removed, false otherwise.
+		 */
+		boolean tryRemove(Runnable task) {
+			if (lock.tryLock()) {
+				try {
+					return queue.remove(task);
+				} finally {
+					lock.unlock();
+				}
+			}
+			return false;
+		}
+		
+		/**
+		 * Get the number of queued tasks.
+		 * @return The queue size.
+		 */
+		int size() {
+			lock.lock();
+			try {
+				return queue.size();
+			} finally {
+				lock.unlock();
+			}
+		}
+		
+		/**
+		 * Moves all the queued tasks to the list.
+		 * @param list The list.
+		 */
+		void drainTo(List<Runnable> list) {
+			lock.lock();
+			try {
+				Runnable task;
+				while ((task = queue.poll()) != null) {
+					list.add(task);
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+		
+		/**
+		 * Takes the next task to run: the best between the own queue head and 
+		 * the head of one neighbour queue, or a stolen one if the own queue is empty.
+		 * @return The task or null if there is no work.
+		 */
+		Runnable next() {
+			
+			Runnable task = poll();
+			
+			if (task == null) {
+				return steal(this);
+			}
+			
+			if (workers.length > 1) {
+				final Worker neighbour = workers[(index + 1) % workers.length];
+				final Runnable other = neighbour.tryPeek();
+				if (other != null 
+						&& comparator.compare(other, task) < 0 
+						&& neighbour.tryRemove(other)) {
+					push(task);
+					task = other;
+				}
+			}
+			
+			return task;
+		}
+		
+		/* (non-Javadoc)
+		 * @see java.lang.Thread#run()
+		 */
+		@Override
+		public void run() {
+			
+			try {
+				
+				while (runState != STOP) {
+					
+					Runnable task = next();
+					
+					if (task == null) {
+						
+						if (runState != RUNNING) {
+							// Shutdown and no work left
+							break;
+						}
+						
+						// Register as idle and check again to not lose a wake up
+						idleWorkers.add(this);
+						task = steal(this);
+						if (task == null) {
+							task = poll();
+						}
+						
+						if (task == null) {
+							// Until a push or the shutdown wakes it up
+							LockSupport.park(this);
+							idleWorkers.remove(this);
+							continue;
+						}
+						
+						if (!idleWorkers.remove(this)) {
+							// A push woke this worker up, but it found other work, 
+							// pass the wake up on to not leave the pushed task waiting
+							final Worker idle = idleWorkers.poll();
+							if (idle != null) {
+								LockSupport.unpark(idle);
+							}
+						}
+					}
+					
+					// Clear interrupts of previous tasks
+					Thread.interrupted();
+					
+					try {
+						task.run();
+					} catch (RuntimeException e) {
+						// Tasks are future tasks, they keep their exceptions
+						e.printStackTrace();
+					}
+				}
+				
+			} finally {
+				termination.countDown();
+			}
+		}
+		
+	}
+	
+}
@@ -39,6 +39,7 @@ import net.hockeyapp.android.FeedbackManager;
 import net.hockeyapp.android.Tracking;
 import net.hockeyapp.android.UpdateManager;
 import r2b.apps.R;
+import r2b.apps.lib.taskmanager.TaskScope;
 import r2b.apps.utils.Cons;
 import r2b.apps.utils.Environment;
 import r2b.apps.utils.cipher.SecurePreferences;
@@ -88,6 +89,10 @@ public abstract class BaseActivity extends android.support.v7.app.ActionBarActiv
 	 * The dialog fragment listener.
 	 */
 	private BaseDialogListener dialogListenerWrapper;
+	/**
+	 * The activity tasks, null until used.
+	 */
+	private TaskScope taskScope;
 	/**
 	 * Main click listener for the activity and all fragments.
 	 */
@@ -151,6 +156,14 @@ public abstract class BaseActivity extends android.support.v7.app.ActionBarActiv
 	 */
 	protected abstract void clear();
 	
+	/**
+	 * Get what to do with the activity tasks on pause, see getTaskScope.
+	 * @return CANCEL by default, override to change it.
+	 */
+	protected TaskScope.POLICY getTaskScopePolicy() {
+		return TaskScope.POLICY.CANCEL;
+	}
+	
 	
 	/* (non-Javadoc)
 	 * @see android.content.ContextWrapper#getSharedPreferences(java.lang.String, int)
@@ -210,6 +223,10 @@ public abstract class BaseActivity extends android.support.v7.app.ActionBarActiv
 		initListeners();
 		init();
 		
+		if(taskScope != null) {
+			taskScope.attach();
+		}
+		
 		// XXX Hockeyapp
 		checkForCrashes();
 		// XXX Hockeyapp
@@ -222,6 +239,10 @@ public abstract class BaseActivity extends android.support.v7.app.ActionBarActiv
 	protected void onPause() {
 		super.onPause();
 		
+		if(taskScope != null) {
+			taskScope.detach();
+		}
+		
 		removeListeners();
 		clear();
 		
@@ -231,6 +252,16 @@ public abstract class BaseActivity extends android.support.v7.app.ActionBarActiv
 		}	
 	}
 	
+	@Override
+	protected void onDestroy() {
+		super.onDestroy();
+		
+		if(taskScope != null) {
+			taskScope.close();
+			taskScope = null;
+		}
+	}
+	
 	/**
 	 * Overrides setSupportProgressBarIndeterminateVisibility and
 	 * setProgressBarIndeterminateVisibility to check if action bar exists.
@@ -376,6 +407,21 @@ public abstract class BaseActivity extends android.support.v7.app.ActionBarActiv
 		return ((BaseApplication) getApplication()).getTracker();
 	}
 	
+	/**
+	 * Get the scope of the activity tasks. Execute the tasks with it and add 
+	 * their observers with it as executor, addObserver(observer, getTaskScope()), 
+	 * so the observers are notified on the main thread only while the activity 
+	 * is resumed. On pause the tasks are cancelled or kept running, see 
+	 * getTaskScopePolicy, and on destroy they are cancelled.
+	 * @return The task scope.
+	 */
+	protected TaskScope getTaskScope() {
+		if(taskScope == null) {
+			taskScope = new TaskScope(((BaseApplication) getApplication()).getTaskManager(), getTaskScopePolicy());
+		}
+		return taskScope;
+	}
+	
 	@Override
 	public void onDialogPositiveClick(BaseDialog dialog) {
 		if(dialogListenerWrapper != null) {
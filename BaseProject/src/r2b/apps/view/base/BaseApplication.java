@@ -32,8 +32,12 @@
 
 package r2b.apps.view.base;
 
+import java.io.File;
+
 import net.hockeyapp.android.Tracking;
 import r2b.apps.R;
+import r2b.apps.lib.taskmanager.BaseAsyncTask;
+import r2b.apps.lib.taskmanager.TaskManager;
 import r2b.apps.utils.Cons;
 import r2b.apps.utils.Environment;
 import r2b.apps.utils.cipher.AESCipher;
@@ -55,10 +59,19 @@ import android.provider.Settings.Secure;
  */
 public class BaseApplication extends Application {
 
+	/**
+	 * File name of the tasks persisted on shutdown.
+	 */
+	private static final String PENDING_TASKS_FILE = "pending_tasks";
+	
 	/**
 	 * Tracker wrapper.
 	 */
 	private ITracker tracker;
+	/**
+	 * Application task manager.
+	 */
+	private TaskManager taskManager;
 	/**
 	 * Activity lifecycle callbacks
 	 */
@@ -107,6 +120,20 @@ public class BaseApplication extends Application {
 		
 		tracker = new BaseTracker(this);
 		
+		taskManager = new TaskManager();
+		// Runs again the persistable tasks that did not run before the last shutdown, 
+		// the file is read on the I/O lane to not block the main thread
+		final File pendingTasksFile = getPendingTasksFile();
+		final BaseAsyncTask restoreTask = new BaseAsyncTask() {
+			@Override
+			protected Void doInBackground() throws Exception {
+				taskManager.restore(pendingTasksFile);
+				return null;
+			}
+		};
+		restoreTask.setLane(TaskManager.LANE_IO);
+		taskManager.execute(restoreTask);
+		
 		if(Cons.ENCRYPT) {
 			AESCipher.init(getApplicationContext());
 		}
@@ -139,6 +166,25 @@ public class BaseApplication extends Application {
 		return tracker;
 	}
 	
+	/**
+	 * Get the application task manager. Use it to run background, 
+	 * delayed and periodic tasks instead of creating new threads or timers.
+	 * @return The task manager.
+	 */
+	public TaskManager getTaskManager() {
+		return taskManager;
+	}
+	
+	/**
+	 * Get the file to persist the pending tasks, restored on start. 
+	 * Use it to shutdown the task manager keeping the persistable tasks: 
+	 * getTaskManager().shutdown(drainTime, unit, getPendingTasksFile()).
+	 * @return The file.
+	 */
+	public File getPendingTasksFile() {
+		return new File(getFilesDir(), PENDING_TASKS_FILE);
+	}
+	
 	/**
 	 * Init Cons constants from base_config xml file.
 	 */
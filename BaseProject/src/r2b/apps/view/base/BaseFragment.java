@@ -32,6 +32,7 @@
 
 package r2b.apps.view.base;
 
+import r2b.apps.lib.taskmanager.TaskScope;
 import r2b.apps.utils.Cons;
 import r2b.apps.utils.cipher.SecurePreferences;
 import r2b.apps.utils.logger.Logger;
@@ -50,6 +51,11 @@ import android.view.ViewGroup;
 public abstract class BaseFragment extends android.support.v4.app.Fragment 
 	implements View.OnClickListener, BaseActivity.CallableBackFragment {
 	
+	/**
+	 * The fragment tasks, null until used.
+	 */
+	private TaskScope taskScope;
+	
 	/**
 	 * Get the layout to show.
 	 * @return The fragment layout.
@@ -91,6 +97,14 @@ public abstract class BaseFragment extends android.support.v4.app.Fragment
 	 */
 	protected abstract void clear();
 	
+	/**
+	 * Get what to do with the fragment tasks on pause, see getTaskScope.
+	 * @return CANCEL by default, override to change it.
+	 */
+	protected TaskScope.POLICY getTaskScopePolicy() {
+		return TaskScope.POLICY.CANCEL;
+	}
+	
 	/**
 	 * Restore state when came from background.
 	 * @param savedInstanceState The state bundle.
@@ -162,6 +176,10 @@ public abstract class BaseFragment extends android.support.v4.app.Fragment
 		initValues();
 		initListeners();
 		init();
+		
+		if(taskScope != null) {
+			taskScope.attach();
+		}
 	}
 	
 	@Override
@@ -171,10 +189,24 @@ public abstract class BaseFragment extends android.support.v4.app.Fragment
 		((BaseActivity) getActivity()).setClickListener(null);
 		((BaseActivity) getActivity()).setBackListener(null);
 		
+		if(taskScope != null) {
+			taskScope.detach();
+		}
+		
 		removeListeners();
 		clear();	
 	}	
 	
+	@Override
+	public void onDestroy() {
+		super.onDestroy();
+		
+		if(taskScope != null) {
+			taskScope.close();
+			taskScope = null;
+		}
+	}
+	
 	/**
 	 * Switch between fragments.
 	 * @param fragment The new fragment.
@@ -266,4 +298,19 @@ public abstract class BaseFragment extends android.support.v4.app.Fragment
 		return ((BaseActivity) getActivity()).getTracker();
 	}
 	
+	/**
+	 * Get the scope of the fragment tasks. Execute the tasks with it and add 
+	 * their observers with it as executor, addObserver(observer, getTaskScope()), 
+	 * so the observers are notified on the main thread only while the fragment 
+	 * is resumed. On pause the tasks are cancelled or kept running, see 
+	 * getTaskScopePolicy, and on destroy they are cancelled.
+	 * @return The task scope.
+	 */
+	protected TaskScope getTaskScope() {
+		if(taskScope == null) {
+			taskScope = new TaskScope(((BaseApplication) getActivity().getApplication()).getTaskManager(), getTaskScopePolicy());
+		}
+		return taskScope;
+	}
+	
 }
@@ -32,9 +32,10 @@
 
 package r2b.apps.view.base;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
 
+import r2b.apps.lib.taskmanager.BaseAsyncTask;
+import r2b.apps.lib.taskmanager.TaskManager;
 import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
@@ -55,7 +56,11 @@ public abstract class BaseSplashActivity extends Activity {
     /**
      * Simulates a loading process.
      */
-    private Timer timer;
+    private BaseAsyncTask task;
+    /**
+     * Own task manager, when the application is not a BaseApplication.
+     */
+    private TaskManager localTaskManager;
     
 	/**
 	 * Initialize features.
@@ -87,9 +92,9 @@ public abstract class BaseSplashActivity extends Activity {
         
         final Context context = this;
  
-        TimerTask task = new TimerTask() {
+        task = new BaseAsyncTask() {
             @Override
-            public void run() {
+            protected Void doInBackground() throws Exception {
                 // Start the next activity
                 Intent mainIntent = new Intent().setClass(context, getNextActivity());
                 startActivity(mainIntent);                
@@ -97,18 +102,55 @@ public abstract class BaseSplashActivity extends Activity {
                 // Close the activity so the user won't able to go back this
                 // activity pressing Back button
                 finish();
+                return null;
             }
         };
  
         // Simulate a long loading process on application startup.
-        timer = new Timer();
-        timer.schedule(task, SPLASH_SCREEN_DELAY);
+        getTaskManager().schedule(task, SPLASH_SCREEN_DELAY, TimeUnit.MILLISECONDS);
+    }
+    
+    @Override
+    protected void onDestroy() {
+    	if(localTaskManager != null) {
+    		// The shutdown awaits the threads, not on the UI thread
+    		final TaskManager taskManager = localTaskManager;
+    		new Thread(new Runnable() {
+    			@Override
+    			public void run() {
+    				taskManager.shutdown(false);
+    			}
+    		}, "BaseSplashActivity-shutdown").start();
+    		localTaskManager = null;
+    	}
+    	super.onDestroy();
+    }
+    
+    /**
+     * Get the application task manager, or an own one with one thread 
+     * and without the I/O lane if the application does not extend BaseApplication.
+     * @return The task manager.
+     */
+    private TaskManager getTaskManager() {
+    	
+    	if(getApplication() instanceof BaseApplication) {
+    		return ((BaseApplication) getApplication()).getTaskManager();
+    	}
+    	
+    	if(localTaskManager == null) {
+    		localTaskManager = new TaskManager.Builder()
+    				.setThreadPoolSize(1)
+    				.setLane(TaskManager.LANE_IO, 0)
+    				.build();
+    	}
+    	
+    	return localTaskManager;
     }
     
 	@Override
 	public void onBackPressed() {
-		if(timer != null) {
-			timer.cancel();
+		if(task != null) {
+			task.cancel(false);
 		}
 		super.onBackPressed();
 	}